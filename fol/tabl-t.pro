@@ -24,3 +24,49 @@ t3 :- test(~ ( ex(X, all(Y, p(X, Y))) --> all(Y, ex(X, p(X, Y))))).
 
 t4 :- test(~ (all(X, p(X) --> q) <-> (ex(X, p(X)) --> q))).
 
+
+%  decide(Fml) - write the result of the decision procedure.
+
+decide(Fml) :-
+  to_internal(Fml, FmlE),
+  decide_tableau(FmlE, Result),
+  write(Result), nl.
+
+t5 :- decide(~ ( all(X, (p(X) --> q(X))) --> (all(X, p(X)) --> all(X, q(X))) )).
+t6 :- decide(~ (all(X, p(X) --> q) <-> (ex(X, p(X)) --> q))).
+t7 :- decide(ex(X, p(X)) ^ ~ p(b)).
+
+%  The tableaux and decisions of t4, t6 and t7 in parallel.
+
+t8 :- to_internal(~ (all(X, p(X) --> q) <-> (ex(X, p(X)) --> q)), FmlE),
+  create_tableau(FmlE, Tab, [parallel(1)]),
+  write_tableau(Tab).
+
+decide(Fml, Options) :-
+  to_internal(Fml, FmlE),
+  decide_tableau(FmlE, Result, Options),
+  write(Result), nl.
+
+t9 :- decide(~ (all(X, p(X) --> q) <-> (ex(X, p(X)) --> q)), [parallel(2)]).
+t10 :- decide(ex(X, p(X)) ^ ~ p(b), [parallel(2)]).
+
+%  No rule for xor: an error is thrown instead of a result.
+
+test_unsupported(Fml, Options) :-
+  catch(decide(Fml, Options),
+        error(domain_error(tableau_formula, F), _),
+        ( write(unsupported(F)), nl )).
+
+t11 :- test_unsupported(ex(X, p(X) + q(X)), []).
+t12 :- test_unsupported(ex(X, p(X) + q(X)), [parallel(1)]).
+
+%  The first branch of the frontier (p(a)) is closed and the
+%    second (q(a)) is open, so every run must find the open branch.
+
+repeated(Goal, Result) :-
+  findall(Result, (between(1, 10, _), once(Goal)), Results),
+  sort(Results, Different),
+  write(Different), nl.
+
+t13 :- to_internal((p(a) v q(a)) ^ ~ p(a), FmlE),
+  repeated(decide_tableau(FmlE, Result, [parallel(1)]), Result).
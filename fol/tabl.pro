@@ -15,6 +15,18 @@ create_tableau(Fml, Tab) :-
   Tab = t([Fml], _, _, []), 
   extend_tableau(Tab).
 
+%  create_tableau(Fml, Tab, Options) - create the tableau with Options:
+%    parallel(Depth) - the subtrees below the first Depth beta rules
+%                      of each branch are extended concurrently
+%                      (see extend_parallel).
+
+create_tableau(Fml, Tab, Options) :-
+  member(parallel(Depth), Options), !,
+  Tab = t([Fml], _, _, []), 
+  extend_parallel(Tab, Depth).
+create_tableau(Fml, Tab, _) :-
+  create_tableau(Fml, Tab).
+
 %  extend_tableau(t(Fmls, Left, Right) - Perform one tableau rule.
 %    1. Check for a pair of contradicatory formulas in Fmls (closed).
 %    2. Check if Fmls contains only literals (open).
@@ -47,6 +59,143 @@ extend_tableau(t(Fmls, Left,   empty, C)) :-
   Left = t(Fmls1, _, _, C),
   extend_tableau(Left).
 
+%  decide_tableau(Fml, Result) - decide if Fml is satisfiable
+%    without building the tableau:
+%    Result is open(Literals), where Literals are the literals of
+%    the first open branch, or closed.
+%  decide_tableau(Fml, Result, Options) - the options are those
+%    of create_tableau.
+%  open_branch(Fmls, C, Literals) - extend the branch depth-first
+%    with the rules in the order of extend_tableau; C is the list
+%    of constants. Only the nodes of the current branch are kept,
+%    and the search stops at the first open leaf.
+%  A node that is not closed, but to which no rule applies, contains
+%    a formula with an operator that has no rule (xor, nand, nor);
+%    the branch is neither open nor closed, so a domain_error is
+%    thrown by unsupported.
+
+decide_tableau(Fml, Result) :-
+  ( open_branch([Fml], [], Literals) ->
+      Result = open(Literals)
+  ;   Result = closed ).
+
+decide_tableau(Fml, Result, Options) :-
+  member(parallel(Depth), Options), !,
+  ( decide_parallel([Fml], [], Depth, Literals) ->
+      Result = open(Literals)
+  ;   Result = closed ).
+decide_tableau(Fml, Result, _) :-
+  decide_tableau(Fml, Result).
+
+open_branch(Fmls, _, _) :-
+  check_closed(Fmls), !,
+  fail.
+open_branch(Fmls, _, Fmls) :-
+  contains_only_literals(Fmls), !.
+open_branch(Fmls, C, Literals) :-
+  alpha_rule(Fmls, Fmls1), !,
+  open_branch(Fmls1, C, Literals).
+open_branch(Fmls, C, Literals) :-
+  beta_rule(Fmls, Fmls1, Fmls2), !,
+  ( open_branch(Fmls1, C, Literals)
+  ; open_branch(Fmls2, C, Literals) ).
+open_branch(Fmls, C, Literals) :-
+  delta_rule(Fmls, Fmls1, Const), !,
+  open_branch(Fmls1, [Const|C], Literals).
+open_branch(Fmls, C, Literals) :-
+  gamma_rule(Fmls, Fmls1, C), !,
+  open_branch(Fmls1, C, Literals).
+open_branch(Fmls, _, _) :-
+  unsupported(Fmls).
+
+unsupported(Fmls) :-
+  member(F, Fmls),
+  \+ literal(F), !,
+  throw(error(domain_error(tableau_formula, F), _)).
+
+%  extend_parallel(Tab, Depth) - the tableau is extended as by
+%    extend_tableau until Depth beta rules have been performed on
+%    a branch; the subtrees at this depth are independent, and they
+%    are extended concurrently by a thread for each CPU.
+%    The constants created by the delta rule may be numbered
+%    differently from those of extend_tableau.
+%  decide_parallel(Fmls, C, Depth, Literals) - the branches at this
+%    depth are searched concurrently by open_branch and the search
+%    stops when an open leaf is found in any of them; the other
+%    threads are cancelled. Literals are those of the first open
+%    leaf found. A closed branch fails without stopping the other
+%    threads (on_fail(continue)), so decide_parallel fails only if
+%    all the branches are closed.
+%  frontier_goals(Tab, Depth, Goals0, Goals)
+%    Goals0-Goals are the goals for extending the subtrees at depth
+%    Depth, and the nodes above them are instantiated.
+%  frontier_branches(Fmls, C, Depth, Branches0, Branches)
+%    Branches0-Branches are the pairs Fmls-C of the branches at
+%    depth Depth that are not closed.
+
+extend_parallel(Tab, Depth) :-
+  frontier_goals(Tab, Depth, Goals, []),
+  tableau_threads(Threads),
+  concurrent(Threads, Goals, []).
+
+decide_parallel(Fmls, C, Depth, Literals) :-
+  frontier_branches(Fmls, C, Depth, Branches, []),
+  Branches = [_ | _],
+  maplist(branch_goal(Literals), Branches, Goals),
+  first_solution(Literals, Goals, [on_fail(continue)]).
+
+branch_goal(Literals, Fmls-C, open_branch(Fmls, C, Literals)).
+
+frontier_goals(Tab, 0, [extend_tableau(Tab) | Goals], Goals) :- !.
+frontier_goals(t(Fmls, closed, empty, _), _, Goals, Goals) :- 
+  check_closed(Fmls), !.
+frontier_goals(t(Fmls, open,   empty, _), _, Goals, Goals) :- 
+  contains_only_literals(Fmls), !.
+frontier_goals(t(Fmls, Left,   empty, C), Depth, Goals0, Goals) :-
+  alpha_rule(Fmls, Fmls1), !,
+  Left = t(Fmls1, _, _, C),
+  frontier_goals(Left, Depth, Goals0, Goals).
+frontier_goals(t(Fmls, Left,   Right, C), Depth, Goals0, Goals) :-
+  beta_rule(Fmls, Fmls1, Fmls2), !,
+  Left  = t(Fmls1, _, _, C),
+  Right = t(Fmls2, _, _, C),
+  Depth1 is Depth - 1,
+  frontier_goals(Left, Depth1, Goals0, Goals1),
+  frontier_goals(Right, Depth1, Goals1, Goals).
+frontier_goals(t(Fmls, Left,   empty, C), Depth, Goals0, Goals) :-
+  delta_rule(Fmls, Fmls1, Const), !,
+  Left = t(Fmls1, _, _, [Const|C]),
+  frontier_goals(Left, Depth, Goals0, Goals).
+frontier_goals(t(Fmls, Left,   empty, C), Depth, Goals0, Goals) :-
+  gamma_rule(Fmls, Fmls1, C), !,
+  Left = t(Fmls1, _, _, C),
+  frontier_goals(Left, Depth, Goals0, Goals).
+
+frontier_branches(Fmls, C, 0, [Fmls-C | Branches], Branches) :- !.
+frontier_branches(Fmls, _, _, Branches, Branches) :-
+  check_closed(Fmls), !.
+frontier_branches(Fmls, C, _, [Fmls-C | Branches], Branches) :-
+  contains_only_literals(Fmls), !.
+frontier_branches(Fmls, C, Depth, Branches0, Branches) :-
+  alpha_rule(Fmls, Fmls1), !,
+  frontier_branches(Fmls1, C, Depth, Branches0, Branches).
+frontier_branches(Fmls, C, Depth, Branches0, Branches) :-
+  beta_rule(Fmls, Fmls1, Fmls2), !,
+  Depth1 is Depth - 1,
+  frontier_branches(Fmls1, C, Depth1, Branches0, Branches1),
+  frontier_branches(Fmls2, C, Depth1, Branches1, Branches).
+frontier_branches(Fmls, C, Depth, Branches0, Branches) :-
+  delta_rule(Fmls, Fmls1, Const), !,
+  frontier_branches(Fmls1, [Const|C], Depth, Branches0, Branches).
+frontier_branches(Fmls, C, Depth, Branches0, Branches) :-
+  gamma_rule(Fmls, Fmls1, C), !,
+  frontier_branches(Fmls1, C, Depth, Branches0, Branches).
+frontier_branches(Fmls, _, _, _, _) :-
+  unsupported(Fmls).
+
+tableau_threads(Threads) :-
+  current_prolog_flag(cpu_count, Threads).
+
 %  check_closed(Fmls)
 %    Fmls is closed if it contains contradictory formulas.
 %  contains_only_literals(Fmls)
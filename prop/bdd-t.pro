@@ -456,6 +456,26 @@ get_bdd(12,         % v1 imp v2
 %    tres(N, K, V)  - Restrict N'th BDD to Value V for variable K.
 %    tadd           - Verify the sum of a one-bit adder:
 %                     B1 xor B2 = (B1 or B2) and (not B1 or not B2)
+%    tite           - If-then-else of three literals and its
+%                     equivalent with apply.
+%    tneg           - Negation complements the edge: neg(v1 xor v2)
+%                     is v1 eqv v2 and shares its nodes.
+%    tsize          - Number of nodes in the BDD of f(12) and f(13)
+%                     for the two variable orders.
+%    tcache         - Build the BDD of tsize twice: the second time
+%                     the results are found in the computed table.
+%    tquant         - Quantify over a list of variables and compute
+%                     a relational product with and_exists; compare
+%                     with quantifying one variable at a time.
+%    tsat           - Count the models of a BDD and list its cubes.
+%    treorder       - Build the BDD of tsize with the bad order,
+%                     reorder by sifting and build it again.
+%    tgc            - Protect the BDD of tsize, build another one
+%                     and collect it as garbage.
+%    tgraph         - Write two BDDs that share nodes in Graphviz
+%                     and GraphML formats.
+%    tpar           - Build the BDD of tsize with parallel_apply
+%                     and compare with apply.
 %    f(N)           - Create BDDs by applying operations to literals.
 
 tall :- tell('tall.txt'),                        fail.
@@ -463,8 +483,19 @@ tall :- write('Reduce...'),     nl, tred(_), nl, fail.
 tall :- write('Apply 86...'),   nl, tapp86(or),  fail.
 tall :- write('Apply 92...'),   nl, tapp92(or),  fail.
 tall :- write('Adder...'),      nl, tadd,        fail.
+tall :- write('Negation...'),   nl, tneg,        fail.
+tall :- write('If-then-else...'), nl, tite,      fail.
 tall :- write('Restrict v2 to '),
         value(V), write(V),     nl, tres(_,2,V), nl, fail.
+tall :- write('Size...'),       nl, tsize,       fail.
+tall :- write('Cache...'),      nl, tcache,      fail.
+tall :- write('Quantify...'),   nl, tquant,      fail.
+tall :- write('Models...'),     nl, tsat,        fail.
+tall :- write('Reorder...'),    nl, treorder,    fail.
+tall :- write('Levels...'),     nl, tlevels,     fail.
+tall :- write('Garbage...'),    nl, tgc,         fail.
+tall :- write('Graph...'),      nl, tgraph,      fail.
+tall :- write('Parallel...'),   nl, tpar,        fail.
 tall :- write('Create...'),     nl, f(_),    nl, fail.
 tall :- told.
 
@@ -511,3 +542,192 @@ tadd :-
   write_bdd(Sum2),
   (Sum1 = Sum2 -> write('Equal') ; write('Not equal')),
   nl.
+
+tite :-
+  literal(pos, 1, P),
+  literal(pos, 2, Q),
+  literal(pos, 3, R),
+  ite(P, Q, R, B1),
+  write_bdd(B1),
+  apply(P, and, Q, PandQ),
+  literal(neg, 1, NegP),
+  apply(NegP, and, R, NegPandR),
+  apply(PandQ, or, NegPandR, B2),
+  (B1 == B2 -> write('Equal') ; write('Not equal')),
+  nl.
+
+tneg :-
+  literal(pos, 1, B1),
+  literal(pos, 2, B2),
+  apply(B1, xor, B2, Xor),
+  neg(Xor, NegXor),
+  apply(B1, eqv, B2, Eqv),
+  write_bdd(NegXor),
+  (NegXor == Eqv -> write('Equal') ; write('Not equal')),
+  nl,
+  bdd_size(Xor, Size1),
+  bdd_size(Eqv, Size2),
+  write('Sizes '), write(Size1), write(' '), write(Size2), nl.
+
+tsize :-
+  tsize([1,2,3,4,5,6,7,8]),
+  tsize([1,5,2,6,3,7,4,8]).
+
+tsize(Vars) :-
+  tsize(Vars, _).
+
+tsize(Vars, R) :-
+  maplist(literal(pos), Vars, [P1,P2,P3,P4,P5,P6,P7,P8]),
+  apply(P1, and, P2, P12),
+  apply(P3, and, P4, P34),
+  apply(P12, or, P34, R1),
+  apply(P5, and, P6, P56),
+  apply(P7, and, P8, P78),
+  apply(P56, or, P78, R2),
+  apply(R1, or, R2, R),
+  bdd_size(R, Size),
+  write('Order '), write(Vars),
+  write(' has '), write(Size), write(' nodes'), nl.
+
+tcache :-
+  set_cache_size(4096),
+  tsize([1,5,2,6,3,7,4,8]),
+  cache_statistics(Hits1, Misses1),
+  write('Hits '), write(Hits1), write(' misses '), write(Misses1), nl,
+  tsize([1,5,2,6,3,7,4,8]),
+  cache_statistics(Hits2, Misses2),
+  write('Hits '), write(Hits2), write(' misses '), write(Misses2), nl.
+
+treorder :-
+  tsize([1,5,2,6,3,7,4,8], R1),
+  reorder([R1]),
+  var_order(Vars),
+  bdd_size(R1, Size),
+  write('Order '), write(Vars),
+  write(' has '), write(Size), write(' nodes'), nl,
+  write_bdd(R1),
+  tsize([1,5,2,6,3,7,4,8], R2),
+  (R1 == R2 -> write('Equal') ; write('Not equal')),
+  nl,
+  clear_bdd.
+
+%  tlevels - after vars 1 and 2 are swapped, var 1 has no nodes when
+%    the table is reordered; the levels must remain a permutation,
+%    otherwise vars 1 and 2 are on the same level.
+
+tlevels :-
+  clear_bdd,
+  set_var_order([2,1]),
+  literal(pos, 2, B2),
+  literal(pos, 3, B3),
+  apply(B2, and, B3, R),
+  reorder([R]),
+  maplist(bdd:level, [1,2,3], Levels),
+  msort(Levels, Sorted),
+  write('Levels '), write(Levels),
+  ( Sorted == [1,2,3] -> write(' permutation') ; write(' not a permutation') ),
+  nl,
+  literal(pos, 1, B1),
+  apply(B1, and, R, R1),
+  sat_count(R1, [1,2,3], Count),
+  write('Models '), write(Count), nl,
+  clear_bdd.
+
+tgc :-
+  tsize([1,2,3,4,5,6,7,8], R1),
+  protect(R1),
+  tsize([8,7,6,5,4,3,2,1], _),
+  node_count(Nodes1),
+  dead_nodes(Dead),
+  write('Nodes '), write(Nodes1), write(' dead '), write(Dead), nl,
+  gc,
+  node_count(Nodes2),
+  write('Nodes '), write(Nodes2), nl,
+  tsize([1,2,3,4,5,6,7,8], R2),
+  (R1 == R2 -> write('Equal') ; write('Not equal')),
+  nl,
+  release(R1),
+  gc,
+  node_count(Nodes3),
+  write('Nodes '), write(Nodes3), nl,
+  clear_bdd.
+
+tgraph :-
+  literal(pos, 1, P),
+  literal(pos, 2, Q),
+  literal(pos, 3, R),
+  apply(Q, and, R, QandR),
+  apply(P, or,  QandR, PorQandR),
+  apply(P, xor, QandR, PxorQandR),
+  current_output(S),
+  write_dot(S, [PorQandR, PxorQandR]),
+  write_graphml(S, [PorQandR, PxorQandR]).
+
+tpar :-
+  clear_bdd,
+  set_parallel(2, 4),
+  maplist(literal(pos), [1,5,2,6,3,7,4,8], [P1,P2,P3,P4,P5,P6,P7,P8]),
+  parallel_apply(P1, and, P2, P12),
+  parallel_apply(P3, and, P4, P34),
+  parallel_apply(P12, or, P34, R1),
+  parallel_apply(P5, and, P6, P56),
+  parallel_apply(P7, and, P8, P78),
+  parallel_apply(P56, or, P78, R2),
+  parallel_apply(R1, or, R2, R),
+  bdd_size(R, Size),
+  write('Parallel has '), write(Size), write(' nodes'), nl,
+  tsize([1,5,2,6,3,7,4,8], R3),
+  (R == R3 -> write('Equal') ; write('Not equal')),
+  nl,
+  parallel_apply(R, xor, R3, X),
+  write_bdd(X), nl,
+  clear_bdd.
+
+tquant :-
+  literal(pos, 1, A),
+  literal(pos, 2, B),
+  literal(pos, 3, C),
+  literal(pos, 4, D),
+  apply(A, eqv, B, AeqvB),
+  apply(B, xor, C, BxorC),
+  apply(C, imp, D, CimpD),
+  apply(BxorC, and, CimpD, G),
+  apply(AeqvB, and, G, F),
+  exists(F, [2,3], E1),
+  exists(F, 2, E2),
+  exists(E2, 3, E3),
+  write_bdd(E1),
+  (E1 == E3 -> write('Equal') ; write('Not equal')),
+  nl,
+  apply(A, or, C, AorC),
+  apply(B, or, D, BorD),
+  apply(AorC, and, BorD, H),
+  forall(H, [3,4], U1),
+  forall(H, 4, U2),
+  forall(U2, 3, U3),
+  write_bdd(U1),
+  (U1 == U3 -> write('Equal') ; write('Not equal')),
+  nl,
+  and_exists(AeqvB, G, [2,3], R),
+  write_bdd(R),
+  (R == E1 -> write('Equal') ; write('Not equal')),
+  nl.
+
+tsat :-
+  get_reduced(6, B),
+  write_bdd(B),
+  sat_count(B, [1,2,3], Count1),
+  sat_count(B, [1,2,3,4,5], Count2),
+  write('Models '), write(Count1), write(' '), write(Count2), nl,
+  neg(B, NegB),
+  sat_count(NegB, [1,2,3], Count3),
+  write('Models of negation '), write(Count3), nl,
+  any_sat(B, Cube),
+  write('First '), write(Cube), nl,
+  forall(all_sat(B, Cube1), (write(Cube1), nl)),
+  numlist(1, 100, Vars),
+  sat_count(B, Vars, Count4),
+  write('Models '), write(Count4), nl,
+  sat_count(1, [], Count5),
+  sat_count(0, [], Count6),
+  write('Models of t and f '), write(Count5), write(' '), write(Count6), nl.
@@ -5,176 +5,1222 @@
 :- module(bdd,
      [reduce/2,
       apply/4,
+      ite/4,
+      parallel_apply/4,
+      parallel_ite/4,
+      set_parallel/2,
       restrict/4,
       exists/3,
       forall/3,
-      literal/3]).
+      and_exists/4,
+      cube/2,
+      sat_count/3,
+      any_sat/2,
+      all_sat/2,
+      literal/3,
+      make_bdd/4,
+      neg/2,
+      leaf/2,
+      node/4,
+      bdd_size/2,
+      support/2,
+      node_count/1,
+      clear_bdd/0,
+      set_cache_size/1,
+      cache_statistics/2,
+      protect/1,
+      release/1,
+      with_protected/2,
+      gc/0,
+      gc/1,
+      maybe_gc/0,
+      dead_nodes/1,
+      set_gc_threshold/1,
+      reorder/0,
+      reorder/1,
+      maybe_reorder/0,
+      maybe_reorder/1,
+      set_reorder_threshold/1,
+      set_var_order/1,
+      var_order/1,
+      cached/2,
+      cache/2]).
 
-%  Cache BDDs for reduce and cache pairs of BDDs for apply.
+%  A BDD is an integer edge 2*ID+C to its root node ID;
+%    if the complement bit C is 1, the BDD is the negation of
+%    the function of the node, so a function and its negation
+%    share all their nodes and neg just flips the bit.
+%  The nodes are kept in a unique table, so there is exactly one
+%    node for each triple (N, False, True) and two BDDs for the
+%    same function are the same integer (compare them with ==).
 %
-%  bdd(N, False, True)
-%    - bdd for variable N with subtrees False, True.
-%  bdd(leaf, Value, x)
-%    - bdd for terminal with Value t or f (x is dummy).
+%  bdd(ID, N, False, True)
+%    - node ID for variable N with subBDDs False, True (edges).
+%      The False edge is never complemented; otherwise, a node
+%      and its negation could be represented in two ways.
+%  The single terminal is node 0 for f, so the edge 0 is f
+%    and the edge 1 (its complement) is t.
 %
-%  bdd_pair(B1, B2, B)
-%    - B is the result of applying an operator to B1, B2.
+%  computed(Slot, Key, B)
+%    - computed table: B is the result of the operation Key,
+%      for example, ite(F, G, H) or restrict(Var, Val, B1).
+%      Results are kept across calls; when gc removes nodes, it
+%      also removes the entries that refer to them. The table has
+%      a fixed number of slots and each key hashes to one slot;
+%      a new entry replaces the older entry in its slot (a lossy
+%      cache), so the table never grows beyond its size.
+%  cache_size(Size)
+%    - number of slots in the computed table.
+%  var_level(N, L)
+%    - the level of variable N in the variable order (see level/2).
+%      The levels are a permutation of the variables: a fact is
+%      changed only by exchanging the levels of two variables,
+%      and it is kept when the variable no longer has nodes,
+%      since another variable may have taken its number as level.
+%  reorder_threshold(Nodes)
+%    - maybe_reorder reorders if there are more than Nodes nodes.
+%  ref(ID, Count)
+%    - during reordering, the number of references to node ID.
+%  protected(B, Count)
+%    - B has been protected Count times more than released.
+%  gc_threshold(Nodes)
+%    - maybe_gc collects garbage if there are more than Nodes nodes.
+%  parallel(Depth, Threads)
+%    - parallel_ite splits to Depth and uses Threads threads.
+%
+%  The flags bdd_id, bdd_nodes, bdd_hits and bdd_misses are updated
+%    atomically, so they can be shared by the threads of parallel_ite.
+%    During parallel_ite, the flag bdd_parallel is 1 and nodes are
+%    added to the unique table under a mutex (see make_node1).
 
-:- dynamic bdd/3, bdd_pair/3.
+:- dynamic bdd/4, computed/3, cache_size/1,
+           var_level/2, reorder_threshold/1, ref/2,
+           protected/2, gc_threshold/1, parallel/2.
 
+:- meta_predicate with_protected(+, 0).
 
-%  reduce(B1, B2) - B2 is the reduced bdd for B1.
-%    - Clear the cache and call reduce1.
-%    - Check if node is cached.
-%    - Return (and cache) leaf.
-%    - Recursively reduce nonterminals
+cache_size(262144).
+reorder_threshold(10000).
+gc_threshold(100000).
+parallel(4, cpu_count).
+
+
+%  clear_bdd - remove all nodes from the unique table.
+%    BDDs created before the call are no longer valid.
+
+clear_bdd :-
+  retractall(bdd(_,_,_,_)),
+  retractall(var_level(_,_)),
+  retractall(protected(_,_)),
+  clear_cache,
+  flag(bdd_id, _, 0),
+  flag(bdd_nodes, _, 0).
+
+%  node_count(Nodes) - Nodes is the number of nodes in the unique table.
+
+node_count(Nodes) :-
+  flag(bdd_nodes, Nodes, Nodes).
+
+%  set_cache_size(Size) - set the number of slots in the computed
+%    table and clear it.
+
+set_cache_size(Size) :-
+  integer(Size), Size > 0,
+  retractall(cache_size(_)),
+  assert(cache_size(Size)),
+  clear_cache.
+
+%  cache_statistics(Hits, Misses) - number of lookups in the
+%    computed table that found and did not find a result
+%    since the table was last cleared.
+
+cache_statistics(Hits, Misses) :-
+  flag(bdd_hits, Hits, Hits),
+  flag(bdd_misses, Misses, Misses).
+
+clear_cache :-
+  retractall(computed(_,_,_)),
+  flag(bdd_hits, _, 0),
+  flag(bdd_misses, _, 0).
+
+%  cached(Key, B) - look up the result B of Key in the computed table.
+%  cache(Key, B)  - enter the result B into the table,
+%                   replacing the entry in the slot.
+%  These are exported so that zdd can use the same table;
+%    its keys are zdd_union(P, Q), etc.
+%  The table is not locked during parallel_ite: an entry is always
+%    a correct result, so if two threads enter a result into the same
+%    slot at the same time, the slot just holds two entries until
+%    it is next replaced.
+
+cached(Key, B) :-
+  slot(Key, Slot),
+  computed(Slot, Key, B), !,
+  flag(bdd_hits, N, N+1).
+cached(_, _) :-
+  flag(bdd_misses, N, N+1),
+  fail.
+
+cache(Key, B) :-
+  slot(Key, Slot),
+  retractall(computed(Slot,_,_)),
+  assert(computed(Slot, Key, B)).
+
+slot(Key, Slot) :-
+  term_hash(Key, Hash),
+  cache_size(Size),
+  Slot is Hash mod Size.
+
+%  leaf(B, Value)         - B is the leaf with Value t or f.
+%  node(B, N, False, True) - B is a nonterminal for variable N
+%                            with subBDDs False, True;
+%                            the complement bit of B is pushed
+%                            to the subBDDs.
+%  neg(B, NegB)           - NegB is the negation of B.
+
+leaf(0, f).
+leaf(1, t).
+
+node(B, N, False, True) :-
+  ID is B >> 1,
+  bdd(ID, N, False1, True1),
+  C is B /\ 1,
+  False is False1 xor C,
+  True  is True1  xor C.
+
+neg(B, NegB) :-
+  NegB is B xor 1.
+
+%  level(N, L) - L is the level of variable N in the variable order:
+%    a variable with a smaller level is nearer the root.
+%    The level of N is N unless it has been changed by reorder.
+
+level(N, L) :-
+  var_level(N, L), !.
+level(N, N).
 
-reduce(B1, B2) :-
-  retractall(bdd(_,_,_)),
-  reduce1(B1, B2).
+%  make_node(N, False, True, B) -
+%    B is the node for variable N with subBDDs False, True.
+%    (1) if the subBDDs are identical, return one of them,
+%    (2) if False is complemented, make the node for the
+%          negations of the subBDDs and complement the edge,
+%    (3) otherwise look up the node in the unique table.
+%  make_node1
+%    (1) if the node is in the unique table, return its edge,
+%    (2) otherwise, assert a node with a new ID.
+%    (3) during parallel_ite, another thread may be adding the same
+%          node, so look it up again and add it while holding the
+%          mutex for its stripe (one of 64, chosen by a hash of the
+%          node); threads adding other nodes are not blocked.
+%    ID 0 is the terminal, so nonterminals start at 1.
 
-reduce1(B, B) :- B, !.
-reduce1(B, B) :-
-  B = bdd(leaf, _, _), !,
-  assert(B).
-reduce1(bdd(N, False, True), NewNode) :-
-  reduce1(False,  NewFalse),
-  reduce1(True, NewTrue),
-  remove(bdd(N, NewFalse, NewTrue), NewNode).
+make_node(_, Subtree, Subtree, Subtree) :- !.
+make_node(N, False, True, B) :-
+  False /\ 1 =:= 1, !,
+  False1 is False xor 1,
+  True1  is True  xor 1,
+  make_node1(N, False1, True1, B1),
+  B is B1 xor 1.
+make_node(N, False, True, B) :-
+  make_node1(N, False, True, B).
 
-%  remove(B1, B2) - Remove independent nonterminals.
-%    - if left and right subtrees are identical, return one of them,
-%      otherwise return (and cache) the node
+make_node1(N, False, True, B) :-
+  bdd(ID, N, False, True), !,
+  B is ID << 1.
+make_node1(N, False, True, B) :-
+  flag(bdd_parallel, 0, 0), !,
+  new_node(N, False, True, B).
+make_node1(N, False, True, B) :-
+  term_hash(N-False-True, Hash),
+  Stripe is Hash mod 64,
+  atom_concat(bdd_unique_, Stripe, Mutex),
+  with_mutex(Mutex, unique_node(N, False, True, B)).
 
-remove(bdd(_, Subtree, Subtree), Subtree) :- !.
-remove(B, B) :- assert(B).
+unique_node(N, False, True, B) :-
+  bdd(ID, N, False, True), !,
+  B is ID << 1.
+unique_node(N, False, True, B) :-
+  new_node(N, False, True, B).
+
+new_node(N, False, True, B) :-
+  flag(bdd_id, ID0, ID0+1),
+  flag(bdd_nodes, Nodes, Nodes+1),
+  ID is ID0 + 1,
+  assert(bdd(ID, N, False, True)),
+  B is ID << 1.
+
+
+%  reduce(B1, B2) - B2 is the reduced bdd for B1.
+%    B1 is a tree of terms bdd(N, False, True) and
+%    bdd(leaf, Value, x) (x is dummy); B2 is its ID.
+%    - Return the ID of a leaf.
+%    - Reduce the subtrees of a nonterminal and make the node;
+%        make_node removes independent nonterminals and
+%        shares isomorphic subBDDs.
+
+reduce(bdd(leaf, Val, _), B) :- !,
+  leaf(B, Val).
+reduce(bdd(N, False, True), B) :-
+  reduce(False, NewFalse),
+  reduce(True,  NewTrue),
+  make_node(N, NewFalse, NewTrue, B).
 
 
 %  apply(B1, Opr, B2, B)  - apply Opr to BDDs: B = B1 Opr B2.
-%  
-%    - Clear cache and call apply1.
-%    - Check for cached pair,
-%    -   otherwise call create a new nonterminal,
-%          check if it can be reduced and assert it.
-
-apply(B1, Opr, B2, B) :- 
-  retractall(bdd_pair(_,_,_)),
-  retractall(bdd(_,_,_)),
-  apply1(B1, Opr, B2, B).
-
-apply1(B1, _, B2, Result) :-
-  bdd_pair(B1, B2, Result), !.
-apply1(B1, Opr, B2, Result1) :-
-  create(B1, Opr, B2, Result),
-  check_reduced(Result, Result1),
-  assert(bdd_pair(B1, B2, Result1)).
-
-%  create(B1, Opr, B2, B)
-%    - create new nonterminal: B = B1 Opr B2.
-%    - create has six clauses:
-%        (1)   two leaves, apply operator.
-%        (2-3) one leaf, check for controlling operand.
-%        (4)   nonterminals for same variable, recurse on subtrees.
-%        (5-6) nonterminals for different variables,
-%                recurse on the smaller variable.
-
-create(bdd(leaf, Val1, _), Opr,         % Both nodes are leaves
-       bdd(leaf, Val2, _),
-       bdd(leaf, ValResult, x)) :- !,
-  opr(Opr, Val1, Val2, ValResult).
-
-create(bdd(leaf, Val, _), Opr,          % True node is leaf
-       _,
-       bdd(leaf, Val, x)) :-
-  controlling(Opr, Val), !.
-
-create(_, Opr,                          % False node is leaf
-       bdd(leaf, Val, _),
-       bdd(leaf, Val, x)) :-
-  controlling(Opr, Val), !.  
-
-create(bdd(N, False1, True1), Opr,      % Nonterminal for same variable
-       bdd(N, False2, True2),
-       bdd(N, FalseResult, TrueResult)) :- !,
-  apply1(False1, Opr, False2, FalseResult),
-  apply1(True1,  Opr, True2,  TrueResult).
-
-create(bdd(N1, False1, True1), Opr,     % True node is leaf or smaller
-       Node2,
-       bdd(N1, FalseResult, TrueResult)) :-
-  Node2 = bdd(N2, _, _),                   
-  (N2 = leaf ;
-   (N1 \= leaf, N1 < N2)), !,           % Check N1\=leaf before "<"
-  apply1(False1,  Opr, Node2, FalseResult),
-  apply1(True1, Opr, Node2, TrueResult).
-
-create(Node1, Opr,                      % False node is leaf or smaller
-       bdd(N2, False2, True2),
-       bdd(N2, FalseResult, TrueResult)) :-
-  apply1(Node1, Opr, False2,  FalseResult),
-  apply1(Node1, Opr, True2, TrueResult).
-
-%  check_reduced(B1, B2)   - reduce B1 before returning as B2.
-%     (1) identical subtrees
-%     (2) dode already in database
-%     (3) do not need to reduce, so assert into database
-
-check_reduced(bdd(_, Subtree, Subtree), Subtree) :- !.
-check_reduced(Result, Result) :- Result, !.
-check_reduced(Result, Result) :- assert(Result).
-
-%  controlling(Opr, V)     - V is a controlling operand for Opr.
-
-controlling(or,  t).
-controlling(and, f).
+%    Each operator is an ite of B1, B2, the negation of B2 and
+%    the leaves; nand and nor are the negations of and and or.
+%  apply_ite(Opr, B1, B2, F, G, H, C) - B1 Opr B2 is ite(F,G,H) xor C.
+
+apply(B1, Opr, B2, B) :-
+  apply_ite(Opr, B1, B2, F, G, H, C),
+  ite(F, G, H, B3),
+  B is B3 xor C.
+
+apply_ite(and,  B1, B2, B1, B2, 0, 0).
+apply_ite(or,   B1, B2, B1, 1, B2, 0).
+apply_ite(imp,  B1, B2, B1, B2, 1, 0).
+apply_ite(xor,  B1, B2, B1, NegB2, B2, 0) :- neg(B2, NegB2).
+apply_ite(eqv,  B1, B2, B1, B2, NegB2, 0) :- neg(B2, NegB2).
+apply_ite(nand, B1, B2, B1, B2, 0, 1).
+apply_ite(nor,  B1, B2, B1, 1, B2, 1).
+
+%  ite(F, G, H, B) - B is if F then G else H: (F and G) or (~F and H).
+%    - Replace G and H by leaves if they are F or its negation.
+%    - Check for terminal cases.
+%    - Normalize to a standard triple.
+%    - Check the computed table,
+%    -   otherwise recurse on the subBDDs for the smallest variable
+%          and make the node.
+
+ite(F, G, H, B) :-
+  then_leaf(F, G, G1),
+  else_leaf(F, H, H1),
+  ite1(F, G1, H1, B).
+
+then_leaf(F, F, 1) :- !.
+then_leaf(F, G, 0) :- G =:= F xor 1, !.
+then_leaf(_, G, G).
+
+else_leaf(F, F, 0) :- !.
+else_leaf(F, H, 1) :- H =:= F xor 1, !.
+else_leaf(_, H, H).
+
+%  ite1 - check for terminal cases.
+%  terminal(F, G, H, B):
+%    (1-2) F is a leaf,
+%    (3)   G and H are the same,
+%    (4-5) G and H are leaves, so the result is F or its negation.
+
+ite1(F, G, H, B) :-
+  terminal(F, G, H, B), !.
+ite1(F, G, H, B) :-
+  standard(F, G, H, F1, G1, H1),
+  complement(F1, G1, H1, F2, G2, H2, C),
+  ite2(F2, G2, H2, B1),
+  B is B1 xor C.
+
+terminal(1, G, _, G).
+terminal(0, _, H, H).
+terminal(_, G, G, G).
+terminal(F, 1, 0, F).
+terminal(F, 0, 1, B) :- neg(F, B).
+
+ite2(F, G, H, B) :-
+  cached(ite(F, G, H), B), !.
+ite2(F, G, H, B) :-
+  top(F, G, H, N),
+  cofactors(F, N, FFalse, FTrue),
+  cofactors(G, N, GFalse, GTrue),
+  cofactors(H, N, HFalse, HTrue),
+  ite(FFalse, GFalse, HFalse, False),
+  ite(FTrue,  GTrue,  HTrue,  True),
+  make_node(N, False, True, B),
+  cache(ite(F, G, H), B).
+
+%  standard(F, G, H, F1, G1, H1) - F1, G1, H1 is the standard triple
+%    for F, G, H: of the equivalent triples, the one whose first
+%    argument precedes the other in the variable order.
+%    (1) ite(F,1,H)  = ite(H,1,F)
+%    (2) ite(F,G,0)  = ite(G,F,0)
+%    (3) ite(F,G,1)  = ite(~G,~F,1)
+%    (4) ite(F,0,H)  = ite(~H,0,~F)
+%    (5) ite(F,G,~G) = ite(G,F,~F)
+
+standard(F, 1, H, H, 1, F) :-
+  precedes(H, F), !.
+standard(F, G, 0, G, F, 0) :-
+  precedes(G, F), !.
+standard(F, G, 1, NegG, NegF, 1) :-
+  precedes(G, F), !,
+  neg(G, NegG),
+  neg(F, NegF).
+standard(F, 0, H, NegH, 0, NegF) :-
+  precedes(H, F), !,
+  neg(H, NegH),
+  neg(F, NegF).
+standard(F, G, H, G, F, NegF) :-
+  H =:= G xor 1,
+  precedes(G, F), !,
+  neg(F, NegF).
+standard(F, G, H, F, G, H).
+
+%  complement(F, G, H, F1, G1, H1, C) -
+%    ite(F,G,H) = ite(F1,G1,H1) xor C where F1 and G1 are not
+%    complemented, so that a triple and its negation are cached once.
+%    ite(~F,G,H) = ite(F,H,G) and ite(F,~G,H) = ~ite(F,G,~H).
+
+complement(F, G, H, F1, G1, H1, C) :-
+  F /\ 1 =:= 1, !,
+  F2 is F xor 1,
+  complement1(F2, H, G, F1, G1, H1, C).
+complement(F, G, H, F1, G1, H1, C) :-
+  complement1(F, G, H, F1, G1, H1, C).
+
+complement1(F, G, H, F, G1, H1, 1) :-
+  G /\ 1 =:= 1, !,
+  G1 is G xor 1,
+  H1 is H xor 1.
+complement1(F, G, H, F, G, H, 0).
+
+%  precedes(B1, B2) - the root of the nonterminal B1 precedes
+%    the root of B2: its level is smaller or, for the same
+%    level, its ID is smaller.
+
+precedes(B1, B2) :-
+  root_var(B1, N1),
+  root_var(B2, N2),
+  level(N1, L1),
+  level(N2, L2),
+  precedes(L1, B1, L2, B2).
+
+precedes(L1, _, L2, _) :- L1 < L2, !.
+precedes(L, B1, L, B2) :- B1 >> 1 < B2 >> 1.
+
+%  parallel_apply(B1, Opr, B2, B) - apply computed by parallel_ite.
+%  parallel_ite(F, G, H, B) - ite computed by several threads.
+%    The recursion of ite is expanded to a depth given by
+%    set_parallel; the ites at that depth are independent and
+%    are computed by a pool of threads (concurrent/3); then the
+%    nodes above them are made as in ite. gc and reorder must not
+%    be called from other threads at the same time.
+%  set_parallel(Depth, Threads) - expand to Depth, giving up to
+%    2^Depth ites to Threads threads; Threads can be cpu_count
+%    (the default) for the number of processors.
+
+parallel_apply(B1, Opr, B2, B) :-
+  apply_ite(Opr, B1, B2, F, G, H, C),
+  parallel_ite(F, G, H, B3),
+  B is B3 xor C.
+
+parallel_ite(F, G, H, B) :-
+  parallel(Depth, Threads0),
+  threads(Threads0, Threads),
+  expand(Depth, F, G, H, Tree, Goals, []),
+  setup_call_cleanup(
+    flag(bdd_parallel, _, 1),
+    concurrent(Threads, Goals, []),
+    flag(bdd_parallel, _, 0)),
+  combine(Tree, B).
+
+set_parallel(Depth, Threads) :-
+  retractall(parallel(_,_)),
+  assert(parallel(Depth, Threads)).
+
+threads(cpu_count, Threads) :- !,
+  current_prolog_flag(cpu_count, Threads).
+threads(Threads, Threads).
+
+%  expand(Depth, F, G, H, Tree, Goals0, Goals) -
+%    Tree describes how to compute ite(F, G, H):
+%      done(B)  - B is the result, found now or computed by a goal
+%                 ite(F1, G1, H1, B) in the difference list Goals0,
+%      split(N, False, True, Key, C) - make the node for N from the
+%                 results of the trees False and True, enter it
+%                 into the computed table for Key and complement
+%                 it if C is 1.
+%    The steps are those of ite before the recursion.
+%  combine(Tree, B) - B is the result of Tree after the goals
+%    have been computed.
+
+expand(0, F, G, H, done(B), [ite(F, G, H, B) | Goals], Goals) :- !.
+expand(Depth, F, G, H, Tree, Goals0, Goals) :-
+  then_leaf(F, G, G1),
+  else_leaf(F, H, H1),
+  expand1(Depth, F, G1, H1, Tree, Goals0, Goals).
+
+expand1(_, F, G, H, done(B), Goals, Goals) :-
+  terminal(F, G, H, B), !.
+expand1(Depth, F, G, H, Tree, Goals0, Goals) :-
+  standard(F, G, H, F1, G1, H1),
+  complement(F1, G1, H1, F2, G2, H2, C),
+  expand2(Depth, F2, G2, H2, C, Tree, Goals0, Goals).
+
+expand2(_, F, G, H, C, done(B), Goals, Goals) :-
+  cached(ite(F, G, H), B1), !,
+  B is B1 xor C.
+expand2(Depth, F, G, H, C, split(N, False, True, ite(F, G, H), C),
+    Goals0, Goals) :-
+  top(F, G, H, N),
+  cofactors(F, N, FFalse, FTrue),
+  cofactors(G, N, GFalse, GTrue),
+  cofactors(H, N, HFalse, HTrue),
+  Depth1 is Depth - 1,
+  expand(Depth1, FFalse, GFalse, HFalse, False, Goals0, Goals1),
+  expand(Depth1, FTrue,  GTrue,  HTrue,  True,  Goals1, Goals).
+
+combine(done(B), B).
+combine(split(N, False, True, Key, C), B) :-
+  combine(False, B1),
+  combine(True,  B2),
+  make_node(N, B1, B2, B3),
+  cache(Key, B3),
+  B is B3 xor C.
+
+%  top(F, G, H, N) - N is the variable with the smallest level at
+%    the roots of F, G, H (at least one of which is a nonterminal).
+%    top1 accumulates a pair Level-Variable.
+
+top(F, G, H, N) :-
+  top1(F, none, T1),
+  top1(G, T1, T2),
+  top1(H, T2, _-N).
+
+top1(B, T0, L-N) :-
+  root_var(B, N),
+  level(N, L),
+  smaller(L, T0), !.
+top1(_, T0, T0).
+
+smaller(_, none) :- !.
+smaller(L1, L0-_) :- L1 < L0.
+
+%  root_var(B, N) - N is the variable at the root of the nonterminal B.
+
+root_var(B, N) :-
+  B > 1,
+  ID is B >> 1,
+  bdd(ID, N, _, _).
+
+%  cofactors(B, N, False, True) -
+%    False and True are the subBDDs of B for variable N.
+%    If the root of B is not N, B does not depend on N.
+
+cofactors(B, N, False, True) :-
+  root_var(B, N), !,
+  node(B, N, False, True).
+cofactors(B, _, B, B).
 
 
 %  literal(Sign, N, BDD) -
 %    BDD of a literal for variable N with Sign - pos or neg.
 
-literal(pos, N, bdd(N, bdd(leaf, f, x), bdd(leaf, t, x))).
-literal(neg, N, bdd(N, bdd(leaf, t, x), bdd(leaf, f, x))).
+literal(pos, N, B) :- make_node(N, 0, 1, B).
+literal(neg, N, B) :- literal(pos, N, B1), neg(B1, B).
+
+%  make_bdd(N, False, True, B) -
+%    B is the BDD of "if N then True else False".
+%    If N is above the roots of False and True in the order,
+%    B is the node from the unique table; otherwise, it is
+%    computed by ite.
+
+make_bdd(N, False, True, B) :-
+  above(N, False),
+  above(N, True), !,
+  make_node(N, False, True, B).
+make_bdd(N, False, True, B) :-
+  literal(pos, N, P),
+  ite(P, True, False, B).
+
+above(_, B) :-
+  B =< 1, !.
+above(N, B) :-
+  root_var(B, N1),
+  below(N1, N).
 
 
 %  restrict(B1, Variable, Value, B2) -
 %    B2 is the restriction of B1 by assigning Value to Variable.
 %    (1) a leaf is the restriction of itself.
-%    (2-3) for a nonterminal on Variable,
+%    (2) restrict the node without the complement bit and
+%          complement the result.
+%  restrict3
+%    (1) check the computed table for restrict(Variable, Value, B1),
+%    (2) otherwise restrict the node and cache it.
+%  restrict2
+%    (1-2) for a nonterminal on Variable,
 %          return the False or True node depending on Value.
-%    (4) fecurse on subBDDs.
-%    Reduce all results before returning.
-
-restrict(B1, Var, Val, B3) :-
-  retractall(bdd(_,_,_)),
-  restrict1(B1, Var, Val, B2),
-  check_reduced(B2, B3).
-
-restrict1(bdd(leaf, Val, x), _, _, bdd(leaf, Val, x)) :- !.
-
-restrict1(bdd(N, False,    _), N,  f, False1)  :-
-  check_reduced(False, False1), !.
-restrict1(bdd(N, _,   True), N,  t, True1) :-
-  check_reduced(True, True1), !.
-
-restrict1(bdd(N, False, True), K,  V,
-          bdd(N, False1R, True1R)) :-
-  restrict1(False,  K, V, False1),
-  check_reduced(False1, False1R),
-  restrict1(True, K, V, True1),
-  check_reduced(True1, True1R).
-
-%  exists(B1, Variable, B2) -
-%    B2 is the existential quantification of B1 on Variable.
-
-exists(B1, V, B2) :-
-  restrict(B1, V, t, BT),
-  restrict(B1, V, f, BF),
-  apply(BT, or, BF, B2).
-
-%  forall(B1, Variable, B2) -
-%    B2 is the universal quantification of B1 on Variable.
-
-forall(B1, V, B2) :-
-  restrict(B1, V, t, BT),
-  restrict(B1, V, f, BF),
-  apply(BT, and, BF, B2).
+%    (3) Variable is above N in the order so it does not appear.
+%    (4) recurse on subBDDs and make the node.
+
+restrict(B1, Var, Val, B2) :-
+  restrict1(B1, Var, Val, B2).
+
+restrict1(B, _, _, B) :-
+  leaf(B, _), !.
+restrict1(B1, Var, Val, B2) :-
+  C is B1 /\ 1,
+  Reg is B1 xor C,
+  restrict3(Reg, Var, Val, Reg2),
+  B2 is Reg2 xor C.
+
+restrict3(B1, Var, Val, B2) :-
+  cached(restrict(Var, Val, B1), B2), !.
+restrict3(B1, Var, Val, B2) :-
+  node(B1, N, False, True),
+  restrict2(N, False, True, Var, Val, B1, B2),
+  cache(restrict(Var, Val, B1), B2).
+
+restrict2(Var, False, _, Var, f, _, False) :- !.
+restrict2(Var, _,  True, Var, t, _, True)  :- !.
+restrict2(N,   _,     _, Var, _, B, B)     :- below(N, Var), !.
+restrict2(N, False, True, Var, Val, _, B) :-
+  restrict1(False, Var, Val, False1),
+  restrict1(True,  Var, Val, True1),
+  make_node(N, False1, True1, B).
+
+%  below(N1, N2) - variable N1 is below N2 in the order.
+
+below(N1, N2) :-
+  level(N1, L1),
+  level(N2, L2),
+  L1 > L2.
+
+%  exists(B1, Vars, B2) -
+%    B2 is the existential quantification of B1 on Vars,
+%    a variable or a list of variables.
+%  forall(B1, Vars, B2) -
+%    B2 is the universal quantification of B1 on Vars:
+%    forall is the negation of exists on the negation.
+
+exists(B1, Vars, B2) :-
+  var_cube(Vars, Cube),
+  exists1(B1, Cube, B2).
+
+forall(B1, Vars, B2) :-
+  neg(B1, NegB1),
+  exists(NegB1, Vars, NegB2),
+  neg(NegB2, B2).
+
+%  cube(Vars, Cube) - Cube is the conjunction of the variables
+%    in the list Vars. A cube is a chain of nodes whose False
+%    subBDDs are f, so it lists the variables in the order.
+
+cube(Vars, Cube) :-
+  maplist(literal(pos), Vars, Literals),
+  foldl(conjoin, Literals, 1, Cube).
+
+conjoin(B1, B2, B) :-
+  apply(B1, and, B2, B).
+
+var_cube(Vars, Cube) :-
+  is_list(Vars), !,
+  cube(Vars, Cube).
+var_cube(Var, Cube) :-
+  cube([Var], Cube).
+
+%  skip(Cube, L, Cube1) - Cube1 is Cube without the variables
+%    whose level is smaller than L, since they do not appear
+%    below a node of level L.
+
+skip(Cube, L, Cube1) :-
+  root_var(Cube, N),
+  level(N, LN),
+  LN < L, !,
+  node(Cube, N, _, Cube2),
+  skip(Cube2, L, Cube1).
+skip(Cube, _, Cube).
+
+%  exists1(B1, Cube, B2) - quantify all the variables of Cube
+%    in one pass over B1:
+%    (1-2) a leaf or an empty cube: nothing to quantify,
+%    (3)   check the computed table,
+%    (4)   otherwise skip the variables of Cube above the root N of B1
+%            and recurse on the subBDDs;
+%          if N is in the cube, the result is their disjunction,
+%          otherwise, it is a node for N.
+
+exists1(B, _, B) :-
+  leaf(B, _), !.
+exists1(B, 1, B) :- !.
+exists1(B1, Cube, B2) :-
+  cached(exists(B1, Cube), B2), !.
+exists1(B1, Cube, B2) :-
+  node(B1, N, False, True),
+  level(N, L),
+  skip(Cube, L, Cube1),
+  quantify(N, Cube1, False, True, B2),
+  cache(exists(B1, Cube), B2).
+
+quantify(N, Cube, False, True, B) :-
+  node(Cube, N, _, Cube1), !,
+  exists1(False, Cube1, False1),
+  exists1(True,  Cube1, True1),
+  apply(False1, or, True1, B).
+quantify(N, Cube, False, True, B) :-
+  exists1(False, Cube, False1),
+  exists1(True,  Cube, True1),
+  make_node(N, False1, True1, B).
+
+%  and_exists(B1, B2, Vars, B) -
+%    B is exists Vars (B1 and B2), the relational product,
+%    computed in one pass without building the conjunction.
+%  and_exists1
+%    (1-3) terminal cases: if either is f or they are complementary,
+%          the result is f; if they are both t, it is t,
+%    (4-6) if one is t or they are the same, quantify the other,
+%    (7)   the conjunction is commutative, so order the pair,
+%    (8)   check the computed table,
+%    (9)   otherwise recurse on the subBDDs for the top variable N:
+%          if N is in the cube, the result is the disjunction of the
+%          results (t if the first is t), otherwise it is a node.
+
+and_exists(B1, B2, Vars, B) :-
+  var_cube(Vars, Cube),
+  and_exists1(B1, B2, Cube, B).
+
+and_exists1(0, _, _, 0) :- !.
+and_exists1(_, 0, _, 0) :- !.
+and_exists1(B1, B2, _, 0) :- B2 =:= B1 xor 1, !.
+and_exists1(1, B2, Cube, B) :- !, exists1(B2, Cube, B).
+and_exists1(B1, 1, Cube, B) :- !, exists1(B1, Cube, B).
+and_exists1(B1, B1, Cube, B) :- !, exists1(B1, Cube, B).
+and_exists1(B1, B2, Cube, B) :-
+  B1 > B2, !,
+  and_exists1(B2, B1, Cube, B).
+and_exists1(B1, B2, Cube, B) :-
+  cached(and_exists(B1, B2, Cube), B), !.
+and_exists1(B1, B2, Cube, B) :-
+  top(B1, B2, 1, N),
+  level(N, L),
+  skip(Cube, L, Cube1),
+  cofactors(B1, N, False1, True1),
+  cofactors(B2, N, False2, True2),
+  and_quantify(N, Cube1, False1, True1, False2, True2, B),
+  cache(and_exists(B1, B2, Cube), B).
+
+and_quantify(N, Cube, False1, True1, False2, True2, B) :-
+  node(Cube, N, _, Cube1), !,
+  and_exists1(False1, False2, Cube1, False),
+  or_exists(False, True1, True2, Cube1, B).
+and_quantify(N, Cube, False1, True1, False2, True2, B) :-
+  and_exists1(False1, False2, Cube, False),
+  and_exists1(True1,  True2,  Cube, True),
+  make_node(N, False, True, B).
+
+or_exists(1, _, _, _, 1) :- !.
+or_exists(False, True1, True2, Cube, B) :-
+  and_exists1(True1, True2, Cube, True),
+  apply(False, or, True, B).
+
+
+%  sat_count(B, Vars, Count) - Count is the number of assignments
+%    to the variables in the list Vars that satisfy B;
+%    Vars must include all the variables of B.
+%    The variables are sorted by level and each node is counted
+%    relative to its position I in the sorted list:
+%      count(N) = count(False) * 2^(I(False)-I(N)-1) +
+%                 count(True)  * 2^(I(True) -I(N)-1)
+%    where the position of a leaf is the number of variables.
+%    A complemented edge at position I counts 2^(K-I) - count(N),
+%    where K is the number of variables.
+%    The counts of the nodes are kept in an association list,
+%    so each node is counted once.
+%    The powers of 2 are computed by shifts, because ops.pro
+%    declares ^ as conjunction.
+%    If Vars is empty, B is a leaf and Count is 0 or 1.
+
+sat_count(B, Vars, Count) :-
+  sort(Vars, Vars1),
+  maplist(level, Vars1, Levels),
+  pairs_keys_values(Pairs, Levels, Vars1),
+  keysort(Pairs, Sorted),
+  pairs_values(Sorted, Ordered),
+  length(Ordered, K),
+  count_positions(K, Is),
+  pairs_keys_values(VarIs, Ordered, Is),
+  list_to_assoc(VarIs, Index),
+  empty_assoc(Memo),
+  count(B, Index-K, Memo, _, Count0, I),
+  Count is Count0 << I.
+
+%  count_positions(K, Is) - Is is the list 0..K-1, empty if K is 0.
+
+count_positions(0, []) :- !.
+count_positions(K, Is) :-
+  K1 is K - 1,
+  numlist(0, K1, Is).
+
+%  count(B, Index-K, Memo0, Memo, Count, I) - Count is the number of
+%    satisfying assignments of B to the variables at positions I..K-1.
+
+count(0, _-K, Memo, Memo, 0, K) :- !.
+count(1, _-K, Memo, Memo, 1, K) :- !.
+count(B, Index-K, Memo0, Memo, Count, I) :-
+  ID is B >> 1,
+  count_node(ID, Index-K, Memo0, Memo, Count1, I),
+  complement_count(B, K, I, Count1, Count).
+
+count_node(ID, _, Memo, Memo, Count, I) :-
+  get_assoc(ID, Memo, Count-I), !.
+count_node(ID, Index-K, Memo0, Memo, Count, I) :-
+  bdd(ID, N, False, True),
+  get_assoc(N, Index, I),
+  count(False, Index-K, Memo0, Memo1, CountF, IF),
+  count(True,  Index-K, Memo1, Memo2, CountT, IT),
+  Count is (CountF << (IF-I-1)) + (CountT << (IT-I-1)),
+  put_assoc(ID, Memo2, Count-I, Memo).
+
+complement_count(B, K, I, Count1, Count) :-
+  B /\ 1 =:= 1, !,
+  Count is (1 << (K-I)) - Count1.
+complement_count(_, _, _, Count, Count).
+
+%  all_sat(B, Cube) - on backtracking, Cube is each path from the
+%    root of B to the leaf t, a list of pairs (N, Value) for the
+%    variables on the path. The variables not in a cube can have
+%    either value, and the cubes are disjoint, so they are the
+%    models of B without repetition. The paths are generated
+%    depth-first without building a list of all of them.
+%  any_sat(B, Cube) - Cube is the first cube of all_sat;
+%    fails if B is f.
+
+all_sat(1, []).
+all_sat(B, [(N, f) | Cube]) :-
+  B > 1,
+  node(B, N, False, _),
+  False =\= 0,
+  all_sat(False, Cube).
+all_sat(B, [(N, t) | Cube]) :-
+  B > 1,
+  node(B, N, _, True),
+  True =\= 0,
+  all_sat(True, Cube).
+
+any_sat(B, Cube) :-
+  all_sat(B, Cube), !.
+
+
+%  bdd_size(B, Size) - Size is the number of nodes of B,
+%    including the terminal; each shared node is counted once,
+%    as is a node reached by both complemented and regular edges.
+%    B can be a list of BDDs, whose shared nodes are counted once.
+
+bdd_size(Bs, Size) :-
+  is_list(Bs), !,
+  empty_assoc(Empty),
+  foldl(visit, Bs, Empty, Visited),
+  assoc_to_keys(Visited, Nodes),
+  length(Nodes, Size).
+bdd_size(B, Size) :-
+  empty_assoc(Empty),
+  visit(B, Empty, Visited),
+  assoc_to_keys(Visited, Nodes),
+  length(Nodes, Size).
+
+visit(B, Visited, Visited) :-
+  ID is B >> 1,
+  get_assoc(ID, Visited, _), !.
+visit(B, Visited, Visited1) :-
+  ID is B >> 1,
+  put_assoc(ID, Visited, x, Visited2),
+  visit1(ID, Visited2, Visited1).
+
+visit1(ID, Visited, Visited1) :-
+  bdd(ID, _, False, True), !,
+  visit(False, Visited,  Visited2),
+  visit(True,  Visited2, Visited1).
+visit1(_, Visited, Visited).
+
+%  support(B, Vars) - Vars is the ordered set of the variables
+%    that appear in B.
+
+support(B, Vars) :-
+  empty_assoc(Empty),
+  visit(B, Empty, Visited),
+  assoc_to_keys(Visited, IDs),
+  findall(N, (member(ID, IDs), bdd(ID, N, _, _)), Ns),
+  sort(Ns, Vars).
+
+
+%  Garbage collection.
+%
+%  Nodes are never removed by the operations, since any of them may
+%  be a BDD held by the caller. A BDD that must survive garbage
+%  collection (and reordering) is protected by an external reference:
+%
+%  protect(B)    - add an external reference to B.
+%  release(B)    - remove an external reference to B.
+%  with_protected(Bs, Goal) - call Goal with the BDDs in the list Bs
+%    protected; they are released when Goal exits, fails or raises
+%    an exception.
+%
+%  gc(Roots) - remove the nodes that cannot be reached from the
+%    protected BDDs or from the BDDs in the list Roots (mark and
+%    sweep); then remove the entries of the computed table that
+%    refer to removed nodes and reclaim the retracted clauses.
+%    IDs are not reused, so an entry refers to a removed node if
+%    and only if there is no node with its ID.
+%  gc            - gc with only the protected BDDs.
+%  dead_nodes(Dead) - Dead is the number of nodes that gc would
+%    remove: those not reachable from the protected BDDs.
+%  maybe_gc      - gc if the number of nodes is greater than the
+%    threshold, which is then raised (if needed) to twice the
+%    number of live nodes.
+%  set_gc_threshold(Nodes) - set the threshold.
+
+protect(B) :-
+  retract(protected(B, Count)), !,
+  Count1 is Count + 1,
+  assert(protected(B, Count1)).
+protect(B) :-
+  assert(protected(B, 1)).
+
+release(B) :-
+  retract(protected(B, Count)), !,
+  release(Count, B).
+release(_).
+
+release(1, _) :- !.
+release(Count, B) :-
+  Count1 is Count - 1,
+  assert(protected(B, Count1)).
+
+with_protected(Bs, Goal) :-
+  setup_call_cleanup(
+    maplist(protect, Bs),
+    Goal,
+    maplist(release, Bs)).
+
+gc :-
+  gc([]).
+
+gc(Roots) :-
+  live(Roots, Visited),
+  forall(
+    (bdd(ID, _, _, _), \+ get_assoc(ID, Visited, _)),
+    remove_node(ID)),
+  purge_cache,
+  garbage_collect_clauses.
+
+dead_nodes(Dead) :-
+  live([], Visited),
+  assoc_to_keys(Visited, Live),
+  length(Live, Count),
+  node_count(Nodes),
+  Dead is Nodes - (Count - 1).
+
+maybe_gc :-
+  node_count(Nodes),
+  gc_threshold(Threshold),
+  Nodes > Threshold, !,
+  gc,
+  node_count(Nodes1),
+  Threshold1 is max(Threshold, 2*Nodes1),
+  set_gc_threshold(Threshold1).
+maybe_gc.
+
+set_gc_threshold(Nodes) :-
+  retractall(gc_threshold(_)),
+  assert(gc_threshold(Nodes)).
+
+%  live(Roots, Visited) - Visited is an association list whose keys
+%    are the IDs of the nodes (including the terminal 0) reachable
+%    from Roots and the protected BDDs.
+%  roots(Roots, All) - All is Roots and the protected BDDs.
+
+live(Roots, Visited) :-
+  roots(Roots, All),
+  empty_assoc(Empty),
+  put_assoc(0, Empty, x, Visited0),
+  foldl(visit, All, Visited0, Visited).
+
+roots(Roots, All) :-
+  findall(B, protected(B, _), Protected),
+  append(Roots, Protected, All).
+
+remove_node(ID) :-
+  retract(bdd(ID, _, _, _)),
+  flag(bdd_nodes, Nodes, Nodes-1).
+
+%  purge_cache - remove the entries of the computed table whose key
+%    or result refers to a removed node. key_bdds lists the BDDs in
+%    each kind of key; entries with other keys are removed.
+
+purge_cache :-
+  forall(
+    (computed(Slot, Key, B), \+ valid_entry(Key, B)),
+    retract(computed(Slot, Key, B))).
+
+valid_entry(Key, B) :-
+  key_bdds(Key, Bs),
+  maplist(valid_bdd, [B | Bs]).
+
+key_bdds(ite(F, G, H),             [F, G, H]).
+key_bdds(restrict(_, _, B),        [B]).
+key_bdds(exists(B, Cube),          [B, Cube]).
+key_bdds(and_exists(B1, B2, Cube), [B1, B2, Cube]).
+
+valid_bdd(B) :-
+  ID is B >> 1,
+  valid_id(ID).
+
+valid_id(0) :- !.
+valid_id(ID) :-
+  bdd(ID, _, _, _).
+
+
+%  Dynamic variable reordering by sifting (Rudell, 1993).
+%
+%  reorder(Roots) - change the variable order to reduce the number
+%    of nodes of the BDDs in the list Roots and the protected BDDs.
+%    Each variable in turn (those with more nodes first) is moved
+%    down to the last level and up to the first level by swapping
+%    adjacent levels and then left at the level where the number
+%    of nodes was smallest. A swap changes the nodes in place, so
+%    the BDDs in Roots still denote the same functions.
+%    Nodes that cannot be reached from them are removed by gc
+%    before sifting and when they become dead during sifting:
+%    other BDDs are no longer valid.
+%  reorder       - reorder with only the protected BDDs.
+%  maybe_reorder(Roots) - reorder if the number of nodes is greater
+%    than the threshold, which is then raised (if needed) to twice
+%    the number of nodes, so that reordering is not repeated
+%    after every operation.
+%  set_reorder_threshold(Nodes) - set the threshold.
+%  set_var_order(Vars) - the variables in the list Vars are placed
+%    in this order, on the levels that they had before; the omitted
+%    variables keep their levels, which are the levels not used by
+%    Vars, so the levels remain a permutation. Vars must not contain
+%    duplicates. Since the nodes are not changed, the unique table
+%    must be empty.
+%  var_order(Vars) - Vars are the variables that appear in the
+%    unique table in the order of their levels.
+
+reorder :-
+  reorder([]).
+
+reorder(Roots) :-
+  gc(Roots),
+  roots(Roots, All),
+  count_references(All),
+  var_order(Vars),
+  maplist(level, Vars, Levels),
+  maplist(keep_level, Vars, Levels),
+  findall(Count-N,
+    (member(N, Vars), aggregate_all(count, bdd(_,N,_,_), Count)),
+    Pairs),
+  keysort(Pairs, Sorted),
+  reverse(Sorted, Largest),
+  pairs_values(Largest, SiftVars),
+  maplist(sift(Levels), SiftVars),
+  retractall(ref(_,_)),
+  purge_cache.
+
+maybe_reorder :-
+  maybe_reorder([]).
+
+maybe_reorder(Roots) :-
+  node_count(Nodes),
+  reorder_threshold(Threshold),
+  Nodes > Threshold, !,
+  reorder(Roots),
+  node_count(Nodes1),
+  Threshold1 is max(Threshold, 2*Nodes1),
+  set_reorder_threshold(Threshold1).
+maybe_reorder(_).
+
+set_reorder_threshold(Nodes) :-
+  retractall(reorder_threshold(_)),
+  assert(reorder_threshold(Nodes)).
+
+set_var_order(Vars) :-
+  node_count(0),
+  is_set(Vars),
+  maplist(level, Vars, Levels0),
+  msort(Levels0, Levels),
+  forall(member(N, Vars), retractall(var_level(N, _))),
+  maplist(assert_level, Vars, Levels).
+
+var_order(Vars) :-
+  findall(L-N, (bdd(_, N, _, _), level(N, L)), Pairs),
+  sort(Pairs, Sorted),
+  pairs_values(Sorted, Vars).
+
+assert_level(N, L) :-
+  assert(var_level(N, L)).
+
+%  keep_level(N, L) - make the level L of N explicit if it is not.
+
+keep_level(N, _) :-
+  var_level(N, _), !.
+keep_level(N, L) :-
+  assert_level(N, L).
+
+%  count_references(Roots) - assert ref(ID, Count) for each node:
+%    the number of edges to it from nodes and from Roots.
+
+count_references(Roots) :-
+  retractall(ref(_,_)),
+  forall(bdd(ID, _, _, _), assert(ref(ID, 0))),
+  forall(bdd(_, _, False, True), (incref(False), incref(True))),
+  maplist(incref, Roots).
+
+%  incref(B), decref(B) - increment or decrement the reference count
+%    of the node of B; when it becomes zero, remove the node and
+%    decrement the counts of its subBDDs. The terminal is not counted.
+
+incref(B) :-
+  ID is B >> 1,
+  incref_id(ID).
+
+incref_id(0) :- !.
+incref_id(ID) :-
+  retract(ref(ID, Count)),
+  Count1 is Count + 1,
+  assert(ref(ID, Count1)).
+
+decref(B) :-
+  ID is B >> 1,
+  decref_id(ID).
+
+decref_id(0) :- !.
+decref_id(ID) :-
+  retract(ref(ID, Count)),
+  Count1 is Count - 1,
+  decref_id(Count1, ID).
+
+decref_id(0, ID) :- !,
+  bdd(ID, _, False, True),
+  remove_node(ID),
+  decref(False),
+  decref(True).
+decref_id(Count, ID) :-
+  assert(ref(ID, Count)).
+
+%  sift(Levels, N) - sift variable N through Levels, the sorted list
+%    of levels of the variables in the table. The best position is
+%    kept as a pair Nodes-Position; moving in one direction stops if
+%    the number of nodes grows beyond max_growth times the best.
+
+max_growth(1.2).
+
+sift(Levels, N) :-
+  node_count(Nodes),
+  position(Levels, N, P),
+  length(Levels, K),
+  Last is K - 1,
+  sift_down(P, Last, Levels, Nodes-P, Best1),
+  position(Levels, N, P1),
+  sift_up(P1, Levels, Best1, _-Best),
+  position(Levels, N, P2),
+  move(P2, Best, Levels).
+
+sift_down(P, Last, _, Best, Best) :-
+  P >= Last, !.
+sift_down(P, Last, Levels, Best0, Best) :-
+  swap(P, Levels),
+  P1 is P + 1,
+  sifted(P1, Best0, Best1, Continue),
+  sift_down1(Continue, P1, Last, Levels, Best1, Best).
+
+sift_down1(stop, _, _, _, Best, Best).
+sift_down1(continue, P, Last, Levels, Best0, Best) :-
+  sift_down(P, Last, Levels, Best0, Best).
+
+sift_up(0, _, Best, Best) :- !.
+sift_up(P, Levels, Best0, Best) :-
+  P1 is P - 1,
+  swap(P1, Levels),
+  sifted(P1, Best0, Best1, Continue),
+  sift_up1(Continue, P1, Levels, Best1, Best).
+
+sift_up1(stop, _, _, Best, Best).
+sift_up1(continue, P, Levels, Best0, Best) :-
+  sift_up(P, Levels, Best0, Best).
+
+%  sifted(P, Best0, Best, Continue) - after moving to position P,
+%    update the best position and decide whether to continue.
+
+sifted(P, Nodes0-P0, Best, Continue) :-
+  node_count(Nodes),
+  better(Nodes, P, Nodes0-P0, Best),
+  max_growth(Growth),
+  continue(Nodes, Nodes0, Growth, Continue).
+
+better(Nodes, P, Nodes0-_, Nodes-P) :- Nodes < Nodes0, !.
+better(_, _, Best, Best).
+
+continue(Nodes, Nodes0, Growth, stop) :- Nodes > Growth * Nodes0, !.
+continue(_, _, _, continue).
+
+%  move(P, Target, Levels) - move the variable at position P
+%    to position Target.
+
+move(P, P, _) :- !.
+move(P, Target, Levels) :-
+  P < Target, !,
+  swap(P, Levels),
+  P1 is P + 1,
+  move(P1, Target, Levels).
+move(P, Target, Levels) :-
+  P1 is P - 1,
+  swap(P1, Levels),
+  move(P1, Target, Levels).
+
+%  position(Levels, N, P) - P is the position of the level of N.
+
+position(Levels, N, P) :-
+  var_level(N, L),
+  nth0(P, Levels, L), !.
+
+%  swap(P, Levels) - swap the variables at positions P and P+1.
+%    Each node for the upper variable X with a subBDD for the lower
+%    variable Y is changed in place to a node for Y whose subBDDs
+%    are new nodes for X:
+%      X ? (Y ? T1 : T0) : (Y ? F1 : F0)  =
+%      Y ? (X ? T1 : F1) : (X ? T0 : F0)
+%    Other nodes for X do not depend on Y and do not change.
+%    New nodes are referenced before old subBDDs are released.
+
+swap(P, Levels) :-
+  nth0(P, Levels, L1),
+  P1 is P + 1,
+  nth0(P1, Levels, L2),
+  var_level(X, L1),
+  var_level(Y, L2),
+  findall(ID-False-True, bdd(ID, X, False, True), Nodes),
+  maplist(swap_node(X, Y), Nodes),
+  retract(var_level(X, L1)),
+  retract(var_level(Y, L2)),
+  assert(var_level(X, L2)),
+  assert(var_level(Y, L1)).
+
+swap_node(X, Y, ID-False-True) :-
+  ( root_var(False, Y) ; root_var(True, Y) ), !,
+  cofactors(False, Y, F0, F1),
+  cofactors(True,  Y, T0, T1),
+  make_ref(X, F0, T0, New0),
+  make_ref(X, F1, T1, New1),
+  incref(New0),
+  incref(New1),
+  retract(bdd(ID, X, False, True)),
+  assert(bdd(ID, Y, New0, New1)),
+  decref(False),
+  decref(True).
+swap_node(_, _, _).
+
+%  make_ref(N, False, True, B) - make_node and, if the node is new,
+%    give it a reference count and reference its subBDDs.
+
+make_ref(N, False, True, B) :-
+  make_node(N, False, True, B),
+  ID is B >> 1,
+  new_ref(ID, False, True).
+
+new_ref(0, _, _) :- !.
+new_ref(ID, _, _) :-
+  ref(ID, _), !.
+new_ref(ID, False, True) :-
+  assert(ref(ID, 0)),
+  incref(False),
+  incref(True).
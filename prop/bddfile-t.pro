@@ -0,0 +1,64 @@
+% Copyright 2000-2012 by M. Ben-Ari. GNU GPL. See prolog.pdf.
+
+%  Test program for saving and loading BDDs.
+
+user:file_search_path(common,'../common').
+  :- ensure_loaded(common(ops)).
+  :- ensure_loaded(common(intext)).
+  :- ensure_loaded(bdd).
+  :- ensure_loaded(bddwrite).
+  :- ensure_loaded(bddfml).
+  :- ensure_loaded(bddfile).
+
+%  test(Fmls, Format) - compile the formulas, save their BDDs,
+%    clear the unique table, load the BDDs and write them;
+%    then compile the formulas again and check that the loaded
+%    BDDs are identical to the new ones.
+
+test(Fmls, Format) :-
+  compile(Fmls, Bs),
+  node_count(Nodes),
+  write('Compiled '), write(Nodes), write(' nodes'), nl,
+  save_bdds('bddfile.tmp', Bs, [format(Format)]),
+  clear_bdd,
+  load_bdds('bddfile.tmp', Loaded),
+  node_count(Nodes1),
+  write('Loaded '), write(Nodes1), write(' nodes'), nl,
+  forall(member(B, Loaded), (write_bdd(B, write_var), nl)),
+  maplist(fml_bdd_internal, Fmls, Bs1),
+  (Loaded == Bs1 -> write('Equal') ; write('Not equal')), nl,
+  delete_file('bddfile.tmp').
+
+compile(Fmls, Bs) :-
+  clear_fml,
+  maplist(fml_bdd_internal, Fmls, Bs).
+
+fml_bdd_internal(Fml, B) :-
+  to_internal(Fml, IFml),
+  fml_bdd(IFml, B).
+
+%  reordered(Fml) - save the BDD of Fml, then load it after
+%    reversing the order and creating a node, so that the order
+%    of the file is not used: the nodes are computed by ite.
+
+reordered(Fml) :-
+  compile([Fml], [B]),
+  save_bdds('bddfile.tmp', [B]),
+  var_order(Vars),
+  clear_bdd,
+  reverse(Vars, Reversed),
+  set_var_order(Reversed),
+  cube(Reversed, _),
+  load_bdds('bddfile.tmp', [Loaded]),
+  var_order(Vars1),
+  write('Order '), write(Vars1), nl,
+  write_bdd(Loaded, write_var),
+  delete_file('bddfile.tmp').
+
+t1 :- test([p --> q --> p, p ^ (q v r), (p ^ q) v (p ^ r)], text).
+t2 :- test([p --> q --> p, p ^ (q v r), (p ^ q) v (p ^ r)], binary).
+t3 :- test([((a1 <-> b1) ^ (a2 <-> b2) ^ (a3 <-> b3)),
+            ~ ((a1 <-> b1) ^ (a2 <-> b2))], binary).
+t4 :- reordered((p ^ q) v r).
+
+tall :- t1, t2, t3, t4.
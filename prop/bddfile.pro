@@ -0,0 +1,253 @@
+% Copyright 2000-2012 by M. Ben-Ari. GNU GPL. See prolog.pdf.
+
+%  Save BDDs to a file and load them
+
+:- module(bddfile,
+     [save_bdds/2,
+      save_bdds/3,
+      load_bdds/2]).
+
+:- use_module(bdd).
+
+%  A file contains a list of BDDs that share their nodes.
+%    Each node is written once, after the nodes of its subBDDs,
+%    so the nodes can be built in the order they are read.
+%    The nodes in the file are numbered 1, 2, ... and an edge is
+%    2*I+C as in the unique table; 0 and 1 are the leaves f and t.
+%
+%  The text format is a sequence of Prolog terms:
+%    order(Vars).            - the variables of the nodes,
+%                              in the order of their levels,
+%    nodes(Count).           - the number of nodes,
+%    node(I, N, False, True). - one for each node,
+%    roots(Edges).           - the BDDs in the list.
+%
+%  The binary format is the four bytes "BDD" 1, followed by the same
+%    information as a sequence of integers: the number of variables
+%    and the variables, the number of nodes and N, False, True for
+%    each node, the number of roots and the roots. An integer is
+%    written in 7-bit groups, least significant first, with the
+%    high bit set in all but the last byte.
+
+%  save_bdds(File, Bs)          - save the list of BDDs Bs in File.
+%  save_bdds(File, Bs, Options) - Options is a list of:
+%    format(text)   - the text format (the default),
+%    format(binary) - the binary format.
+
+save_bdds(File, Bs) :-
+  save_bdds(File, Bs, []).
+
+save_bdds(File, Bs, Options) :-
+  format_option(Options, Format),
+  stream_type(Format, Type),
+  dump(Bs, Vars, Nodes, Roots),
+  setup_call_cleanup(
+    open(File, write, S, [type(Type)]),
+    write_dump(Format, S, Vars, Nodes, Roots),
+    close(S)).
+
+format_option(Options, Format) :-
+  member(format(Format), Options), !.
+format_option(_, text).
+
+stream_type(text,   text).
+stream_type(binary, binary).
+
+%  load_bdds(File, Bs) - Bs is the list of BDDs saved in File,
+%    in either format.
+%    The nodes are built through the unique table, so they are
+%    shared with the BDDs that already exist. If the unique table
+%    is empty, the variable order of the file is used; otherwise
+%    the current order is kept and a node whose variable is not
+%    above its subBDDs in this order is computed with ite.
+%    The BDDs are not protected from gc.
+
+load_bdds(File, Bs) :-
+  binary_file(File), !,
+  setup_call_cleanup(
+    open(File, read, S, [type(binary)]),
+    read_binary(S, Bs),
+    close(S)).
+load_bdds(File, Bs) :-
+  setup_call_cleanup(
+    open(File, read, S),
+    read_text(S, Bs),
+    close(S)).
+
+binary_file(File) :-
+  setup_call_cleanup(
+    open(File, read, S, [type(binary)]),
+    read_magic(S),
+    close(S)).
+
+magic([0'B, 0'D, 0'D, 1]).
+
+read_magic(S) :-
+  magic(Bytes),
+  maplist(get_byte(S), Bytes).
+
+
+%  dump(Bs, Vars, Nodes, Roots)
+%    Nodes is the list of node(I, N, False, True) reachable from
+%    the BDDs Bs, numbered so that the subBDDs of a node come first,
+%    and Roots are the edges of Bs in this numbering.
+%    Vars are the variables of Nodes in the order of their levels.
+%    The state s(Map, Count, Nodes) maps node IDs in the unique table
+%    to their numbers; the nodes are accumulated in reverse order.
+
+dump(Bs, Vars, Nodes, Roots) :-
+  empty_assoc(Empty),
+  put_assoc(0, Empty, 0, Map),
+  foldl(dump_edge, Bs, Roots, s(Map, 0, []), s(_, _, Reversed)),
+  reverse(Reversed, Nodes),
+  dump_vars(Nodes, Vars).
+
+dump_edge(B, E, State0, State) :-
+  ID is B >> 1,
+  dump_node(ID, I, State0, State),
+  E is (I << 1) \/ (B /\ 1).
+
+dump_node(ID, I, State, State) :-
+  State = s(Map, _, _),
+  get_assoc(ID, Map, I), !.
+dump_node(ID, I, State0, s(Map1, I, [node(I, N, F, T) | Nodes])) :-
+  B is ID << 1,
+  node(B, N, False, True),
+  dump_edge(False, F, State0, State1),
+  dump_edge(True,  T, State1, s(Map, Count, Nodes)),
+  I is Count + 1,
+  put_assoc(ID, Map, I, Map1).
+
+%  dump_vars(Nodes, Vars) - Vars are the variables of Nodes,
+%    taken from var_order so that they are in the order of levels.
+
+dump_vars(Nodes, Vars) :-
+  findall(N-x, member(node(_, N, _, _), Nodes), Pairs0),
+  sort(Pairs0, Pairs),
+  list_to_assoc(Pairs, Used),
+  var_order(Order),
+  findall(N, (member(N, Order), get_assoc(N, Used, _)), Vars).
+
+
+%  write_dump(Format, S, Vars, Nodes, Roots) - write to stream S.
+
+write_dump(text, S, Vars, Nodes, Roots) :-
+  length(Nodes, Count),
+  format(S, 'order(~w).~n', [Vars]),
+  format(S, 'nodes(~w).~n', [Count]),
+  forall(member(Node, Nodes), format(S, '~w.~n', [Node])),
+  format(S, 'roots(~w).~n', [Roots]).
+
+write_dump(binary, S, Vars, Nodes, Roots) :-
+  magic(Bytes),
+  maplist(put_byte(S), Bytes),
+  put_ints(S, Vars),
+  length(Nodes, Count),
+  put_int(S, Count),
+  forall(member(node(_, N, F, T), Nodes), maplist(put_int(S), [N, F, T])),
+  put_ints(S, Roots).
+
+%  put_ints(S, Xs) - write the length of the list Xs and its elements.
+%  put_int(S, X)   - write the nonnegative integer X in 7-bit groups.
+
+put_ints(S, Xs) :-
+  length(Xs, Length),
+  put_int(S, Length),
+  maplist(put_int(S), Xs).
+
+put_int(S, X) :-
+  X < 128, !,
+  put_byte(S, X).
+put_int(S, X) :-
+  Byte is (X /\ 127) \/ 128,
+  put_byte(S, Byte),
+  X1 is X >> 7,
+  put_int(S, X1).
+
+
+%  read_text(S, Bs)   - load BDDs from the text stream S.
+%  read_binary(S, Bs) - load BDDs from the binary stream S
+%    after the magic bytes.
+%  Map is an association list from the numbers of the nodes
+%    in the file to their BDDs.
+
+read_text(S, Bs) :-
+  read(S, order(Vars)),
+  use_order(Vars),
+  read(S, nodes(_)),
+  empty_assoc(Empty),
+  put_assoc(0, Empty, 0, Map),
+  read(S, Term),
+  read_nodes(Term, S, Map, Bs).
+
+read_nodes(node(I, N, F, T), S, Map, Bs) :- !,
+  load_node(I, N, F, T, Map, Map1),
+  read(S, Term),
+  read_nodes(Term, S, Map1, Bs).
+read_nodes(roots(Roots), _, Map, Bs) :-
+  maplist(load_edge(Map), Roots, Bs).
+
+read_binary(S, Bs) :-
+  read_magic(S),
+  get_ints(S, Vars),
+  use_order(Vars),
+  get_int(S, Count),
+  empty_assoc(Empty),
+  put_assoc(0, Empty, 0, Map0),
+  read_nodes(0, Count, S, Map0, Map),
+  get_ints(S, Roots),
+  maplist(load_edge(Map), Roots, Bs).
+
+read_nodes(Count, Count, _, Map, Map) :- !.
+read_nodes(I0, Count, S, Map0, Map) :-
+  I is I0 + 1,
+  get_int(S, N),
+  get_int(S, F),
+  get_int(S, T),
+  load_node(I, N, F, T, Map0, Map1),
+  read_nodes(I, Count, S, Map1, Map).
+
+%  get_ints(S, Xs) - read a list written by put_ints.
+%  get_int(S, X)   - read an integer written by put_int;
+%    X0 accumulates the groups and Shift is the position of the next.
+
+get_ints(S, Xs) :-
+  get_int(S, Length),
+  length(Xs, Length),
+  maplist(get_int(S), Xs).
+
+get_int(S, X) :-
+  get_byte(S, Byte),
+  get_int(Byte, S, 0, 0, X).
+
+get_int(Byte, _, Shift, X0, X) :-
+  Byte < 128, !,
+  X is X0 \/ (Byte << Shift).
+get_int(Byte, S, Shift, X0, X) :-
+  X1 is X0 \/ ((Byte /\ 127) << Shift),
+  Shift1 is Shift + 7,
+  get_byte(S, Byte1),
+  get_int(Byte1, S, Shift1, X1, X).
+
+%  use_order(Vars) - use the order of the file if the unique table
+%    is empty.
+
+use_order(Vars) :-
+  node_count(0), !,
+  set_var_order(Vars).
+use_order(_).
+
+%  load_node(I, N, F, T, Map0, Map) - build node I from the edges
+%    F and T to nodes already loaded.
+%  load_edge(Map, E, B) - B is the BDD of the edge E.
+
+load_node(I, N, F, T, Map0, Map) :-
+  load_edge(Map0, F, False),
+  load_edge(Map0, T, True),
+  make_bdd(N, False, True, B),
+  put_assoc(I, Map0, B, Map).
+
+load_edge(Map, E, B) :-
+  I is E >> 1,
+  get_assoc(I, Map, B1),
+  B is B1 xor (E /\ 1).
@@ -0,0 +1,68 @@
+% Copyright 2000-2012 by M. Ben-Ari. GNU GPL. See prolog.pdf.
+
+%  Test program for compiling formulas to BDDs.
+
+user:file_search_path(common,'../common').
+  :- ensure_loaded(common(ops)).
+  :- ensure_loaded(common(intext)).
+  :- ensure_loaded(common(io)).
+  :- ensure_loaded(bdd).
+  :- ensure_loaded(bddwrite).
+  :- ensure_loaded(bddfml).
+
+%  test(Fml) - write the BDD of Fml and whether it is valid.
+
+test(Fml) :-
+  clear_fml,
+  write_formula(Fml), nl,
+  to_internal(Fml, IFml),
+  fml_bdd(IFml, B),
+  write_bdd(B, write_var), nl,
+  (fml_valid(IFml) -> write('Valid') ; write('Not valid')), nl.
+
+%  equiv(F1, F2) - check if F1 and F2 are equivalent.
+
+equiv(F1, F2) :-
+  write_formula(F1), write(' and '), write_formula(F2),
+  to_internal(F1, I1),
+  to_internal(F2, I2),
+  (fml_equivalent(I1, I2) ->
+     write(' are equivalent') ; write(' are not equivalent')),
+  nl.
+
+%  order(Fml) - number of nodes with each order heuristic.
+
+order(Fml) :-
+  write_formula(Fml), nl,
+  to_internal(Fml, IFml),
+  order(IFml, dfs),
+  order(IFml, force).
+
+order(IFml, Heuristic) :-
+  clear_fml,
+  fml_bdd(IFml, B, [order(Heuristic)]),
+  bdd_size(B, Size),
+  findall(A, atom_var(A, _), Atoms),
+  write(Heuristic), write(' '), write(Atoms),
+  write(' has '), write(Size), write(' nodes'), nl.
+
+t1 :- test(p --> q --> p).
+t2 :- test(p --> (q --> r) --> (p --> q) --> (p --> r)).
+t3 :- test( (p+q) <-> (~ (p -->  q) v ~ (q --> p) )).
+t4 :- test(p ^ (q v r)).
+t5 :- test( (# p --> p) ^ (# p v ~ # p) ).
+
+t6 :- equiv(p --> q, ~q --> ~p).
+t7 :- equiv(p ^ (q v r), (p ^ q) v (p ^ r)).
+t8 :- equiv(p + q, p <-> q).
+
+t9  :- order( (a1 v a2 v a3 v a4) ^
+              ((a1 ^ b1) v (a2 ^ b2) v (a3 ^ b3) v (a4 ^ b4)) ).
+t10 :- order( ((a1 <-> b1) ^ (a2 <-> b2) ^ (a3 <-> b3)) v
+              (a1 ^ a2 ^ a3) ).
+
+%  An order that leaves out q: q gets a variable after r and p.
+
+t11 :- to_internal(p ^ (q v r), IFml), order(IFml, [r, p]).
+
+tall :- t1, t2, t3, t4, t5, t6, t7, t8, t9, t10, t11.
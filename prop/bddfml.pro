@@ -0,0 +1,262 @@
+% Copyright 2000-2012 by M. Ben-Ari. GNU GPL. See prolog.pdf.
+
+%  Compile a formula in internal format to a BDD
+
+:- module(bddfml,
+     [fml_bdd/2,
+      fml_bdd/3,
+      fml_valid/1,
+      fml_satisfiable/1,
+      fml_equivalent/2,
+      atom_var/2,
+      write_var/1,
+      clear_fml/0,
+      dfs_order/2,
+      force_order/2]).
+
+:- use_module(bdd).
+
+%  Each atom is mapped to a BDD variable (an integer).
+%  The mapping is kept across calls, so that the BDDs of
+%  several formulas can be combined and compared.
+%
+%  atom_var(A, N) - atom A is variable N.
+%
+%  Variables are numbered in the order that the atoms are first
+%    compiled, so the initial variable order is given by a
+%    heuristic that orders the atoms of the formula.
+
+:- dynamic atom_var/2.
+
+%  clear_fml - remove the atoms and all BDDs.
+
+clear_fml :-
+  retractall(atom_var(_,_)),
+  flag(bddfml_var, _, 0),
+  clear_bdd.
+
+%  fml_bdd(Fml, B)          - B is the BDD of Fml.
+%  fml_bdd(Fml, B, Options) - Options is a list of:
+%    order(dfs)    - atoms in the order of a depth-first traversal
+%                    (the default),
+%    order(force)  - atoms ordered by the FORCE heuristic,
+%    order(Atoms)  - atoms in the order of the list Atoms,
+%    order(Pred)   - atoms in the order returned by Pred(Fml, Atoms).
+%  Atoms that already have variables keep them; new atoms get
+%    new variables after all the existing ones.
+%  Atoms of Fml that are not in the order (a list or the result of
+%    Pred that leaves some out) get new variables after those of
+%    the order, in the order of dfs.
+
+fml_bdd(Fml, B) :-
+  fml_bdd(Fml, B, []).
+
+fml_bdd(Fml, B, Options) :-
+  order_option(Options, Order),
+  atom_order(Order, Fml, Atoms),
+  maplist(new_var, Atoms),
+  dfs_order(Fml, AllAtoms),
+  maplist(new_var, AllAtoms),
+  empty_assoc(Memo),
+  compile(Fml, Memo, _, B).
+
+order_option(Options, Order) :-
+  member(order(Order), Options), !.
+order_option(_, dfs).
+
+atom_order(dfs, Fml, Atoms) :- !,
+  dfs_order(Fml, Atoms).
+atom_order(force, Fml, Atoms) :- !,
+  force_order(Fml, Atoms).
+atom_order(Atoms, _, Atoms) :-
+  is_list(Atoms), !.
+atom_order(Pred, Fml, Atoms) :-
+  call(Pred, Fml, Atoms).
+
+new_var(A) :-
+  atom_var(A, _), !.
+new_var(A) :-
+  flag(bddfml_var, N, N+1),
+  N1 is N + 1,
+  assert(atom_var(A, N1)).
+
+%  compile(Fml, Memo0, Memo, B)
+%    B is the BDD of Fml; Memo is an association list from
+%    subformulas to BDDs, so a subformula that appears more
+%    than once is compiled once.
+%    (1) the subformula has already been compiled,
+%    (2) negation just complements the BDD,
+%    (3) binary operators are applied to the BDDs of the operands,
+%    (4) anything else is an atom; a temporal formula like
+%        always A is also treated as an atom.
+
+compile(Fml, Memo, Memo, B) :-
+  get_assoc(Fml, Memo, B), !.
+compile(neg A, Memo0, Memo, B) :- !,
+  compile(A, Memo0, Memo, B1),
+  neg(B1, B).
+compile(Fml, Memo0, Memo, B) :-
+  binary(Fml, Opr, A1, A2), !,
+  compile(A1, Memo0, Memo1, B1),
+  compile(A2, Memo1, Memo2, B2),
+  apply(B1, Opr, B2, B),
+  put_assoc(Fml, Memo2, B, Memo).
+compile(A, Memo0, Memo, B) :-
+  atom_var(A, N),
+  literal(pos, N, B),
+  put_assoc(A, Memo0, B, Memo).
+
+%  binary(Fml, Opr, A1, A2) - Fml is A1 Opr A2 for an operator
+%    that apply can compute.
+
+binary(Fml, Opr, A1, A2) :-
+  Fml =.. [Opr, A1, A2],
+  member(Opr, [or, and, xor, eqv, imp, nor, nand]).
+
+%  fml_valid(Fml)           - Fml is valid.
+%  fml_satisfiable(Fml)     - Fml is satisfiable.
+%  fml_equivalent(F1, F2)   - F1 and F2 are equivalent.
+%    Since BDDs are canonical, these just compare integers.
+
+fml_valid(Fml) :-
+  fml_bdd(Fml, B),
+  leaf(B, t).
+
+fml_satisfiable(Fml) :-
+  fml_bdd(Fml, B),
+  \+ leaf(B, f).
+
+fml_equivalent(F1, F2) :-
+  fml_bdd(F1, B1),
+  fml_bdd(F2, B2),
+  B1 == B2.
+
+%  write_var(N) - write the atom of variable N;
+%    use with write_bdd(B, write_var).
+
+write_var(N) :-
+  atom_var(A, N), !,
+  write(A).
+write_var(N) :-
+  write(v), write(N).
+
+
+%  dfs_order(Fml, Atoms) - Atoms are the atoms of Fml in the order
+%    in which they are first reached by a left-to-right depth-first
+%    traversal, so atoms that appear together in a subformula are
+%    close to each other in the order.
+
+dfs_order(Fml, Atoms) :-
+  dfs(Fml, [], Reversed),
+  reverse(Reversed, Atoms).
+
+dfs(neg A, Atoms0, Atoms) :- !,
+  dfs(A, Atoms0, Atoms).
+dfs(Fml, Atoms0, Atoms) :-
+  binary(Fml, _, A1, A2), !,
+  dfs(A1, Atoms0, Atoms1),
+  dfs(A2, Atoms1, Atoms).
+dfs(A, Atoms, Atoms) :-
+  memberchk(A, Atoms), !.
+dfs(A, Atoms, [A | Atoms]).
+
+%  force_order(Fml, Atoms) - order the atoms by the FORCE heuristic
+%    (Aloul, Markov and Sakallah, 2003).
+%    Each binary subformula is a hyperedge connecting its atoms.
+%    Starting from the depth-first order, each iteration:
+%      - computes the center of gravity of each hyperedge
+%          (the average position of its atoms),
+%      - moves each atom to the average of the centers of gravity
+%          of the hyperedges that contain it,
+%      - sorts the atoms by their new positions.
+%    Iteration stops when the total span of the hyperedges
+%    (the sum of the distance between the first and last atom
+%    of each) no longer decreases.
+
+force_order(Fml, Atoms) :-
+  dfs_order(Fml, Atoms0),
+  findall(Edge, hyperedge(Fml, Edge), Edges0),
+  sort(Edges0, Edges),
+  length(Atoms0, N),
+  force(Atoms0, Edges, N, Atoms).
+
+force(Atoms0, Edges, Iterations, Atoms) :-
+  Iterations > 0,
+  positions(Atoms0, Positions0),
+  span(Edges, Positions0, Span0),
+  foldl(add_cog(Positions0), Edges, Positions0, Sums),
+  maplist(new_position(Sums, Positions0), Atoms0, Keyed),
+  keysort(Keyed, Sorted),
+  pairs_values(Sorted, Atoms1),
+  positions(Atoms1, Positions1),
+  span(Edges, Positions1, Span1),
+  Span1 < Span0, !,
+  Iterations1 is Iterations - 1,
+  force(Atoms1, Edges, Iterations1, Atoms).
+force(Atoms, _, _, Atoms).
+
+%  hyperedge(Fml, Edge) - Edge is the sorted list of the atoms of
+%    a binary subformula of Fml with at least two atoms.
+
+hyperedge(Fml, Edge) :-
+  subformula(Fml, Sub),
+  binary(Sub, _, _, _),
+  dfs_order(Sub, Atoms),
+  Atoms = [_, _ | _],
+  sort(Atoms, Edge).
+
+subformula(Fml, Fml).
+subformula(neg A, Sub) :- !,
+  subformula(A, Sub).
+subformula(Fml, Sub) :-
+  binary(Fml, _, A1, A2),
+  ( subformula(A1, Sub) ; subformula(A2, Sub) ).
+
+%  positions(Atoms, Positions) - association list from atoms
+%    to their positions 0, 1, ...
+
+positions(Atoms, Positions) :-
+  length(Atoms, N),
+  N1 is N - 1,
+  numlist(0, N1, Ns),
+  pairs_keys_values(Pairs, Atoms, Ns),
+  list_to_assoc(Pairs, Positions).
+
+span(Edges, Positions, Span) :-
+  foldl(edge_span(Positions), Edges, 0, Span).
+
+edge_span(Positions, Edge, Span0, Span) :-
+  maplist(position(Positions), Edge, Ps),
+  max_list(Ps, Max),
+  min_list(Ps, Min),
+  Span is Span0 + Max - Min.
+
+position(Positions, A, P) :-
+  get_assoc(A, Positions, P).
+
+%  add_cog(Positions, Edge, Sums0, Sums) - add the center of gravity
+%    of Edge to the sum for each of its atoms; Sums maps each atom
+%    to Sum/Count, initially its position (as if it were alone).
+
+add_cog(Positions, Edge, Sums0, Sums) :-
+  maplist(position(Positions), Edge, Ps),
+  sum_list(Ps, Total),
+  length(Edge, Length),
+  Cog is Total / Length,
+  foldl(add_sum(Cog), Edge, Sums0, Sums).
+
+add_sum(Cog, A, Sums0, Sums) :-
+  get_assoc(A, Sums0, Sum0),
+  sum_count(Sum0, Sum, Count),
+  Sum1 is Sum + Cog,
+  Count1 is Count + 1,
+  put_assoc(A, Sums0, Sum1/Count1, Sums).
+
+sum_count(Sum/Count, Sum, Count) :- !.
+sum_count(_, 0, 0).
+
+new_position(Sums, _, A, P-A) :-
+  get_assoc(A, Sums, Sum/Count), !,
+  P is Sum / Count.
+new_position(_, Positions, A, P-A) :-
+  get_assoc(A, Positions, P).
@@ -4,59 +4,115 @@
 
 :- module(bddwrite,
      [write_bdd/1,
-      write_bdd/2]).
+      write_bdd/2,
+      write_bdd/3,
+      write_dot/2,
+      write_dot/3,
+      write_graphml/2,
+      write_graphml/3]).
 
-%  The nodes are numbers by IDs.
-%  id is used to generate node IDs.
-%  bddid caches pairs (bdd, id):
-%    if a subBDD appears again, write the previous ID
+:- use_module(bdd, [leaf/2, node/4]).
 
-:- dynamic id/1, bddid/2.
+%  The nodes are numbered by IDs in the order they are written.
+%  A BDD is an integer edge 2*ID+C to a node in the unique table
+%    of bdd, so the IDs are kept in an association list indexed by
+%    the identifier of the node (edge_key): if a node appears again,
+%    write the previous ID. A node reached by an edge and by its
+%    complement is written once, and a complemented edge is marked
+%    (~ in write_bdd). The edges 0 and 1 to the terminal are written
+%    as the leaves f and t.
+%  The association list and the next ID are passed as a pair
+%    Ids-Next, so the BDD is written in one pass without
+%    changing the database.
 
+:- meta_predicate
+     write_bdd(+, 1),
+     write_bdd(+, +, 1),
+     write_dot(+, +, 1),
+     write_graphml(+, +, 1).
 
-%  write_bdd(B)         - write a bdd after clearing database.
+
+%  write_bdd(B)         - write a bdd.
 %    (1) If B has been encountered just write the node id.
-%    (2) For terminals, write the value, assign id and cache the node.
+%    (2) For terminals, write the value and assign id.
 %    (3) For nonterminals, write the variable number,
-%          assign id, cache the node and recurse.
+%          assign id and recurse.
 %
-%  write_bdd(B, Write) 
+%  write_bdd(B, Write)
 %    The Write argument is a predicate used to write the variable N.
-%    write_bdd/1 calls write_bdd/2 with default predicate write_atom 
+%    write_bdd/1 calls write_bdd/2 with default predicate write_atom
+%
+%  write_bdd(Stream, B, Write) - write to Stream.
 %
-%  write_bdd(B, indent, Write) - auxiliary predicate with indent count.
+%  write_bdd(B, Indent, Write, Ids0, Ids) - auxiliary predicate
+%    with indent count.
 
 write_bdd(B)  :-
   write_bdd(B, write_atom).
 
 write_bdd(B, Write) :-
-  retractall(bddid(_,_)),
-  retractall(id(_)),
-  write_bdd(B, 0, Write).
+  empty_assoc(Empty),
+  write_bdd(B, 0, Write, Empty-1, _).
+
+write_bdd(Stream, B, Write) :-
+  with_output(Stream, write_bdd(B, Write)).
 
-write_bdd(B, Indent, _) :- 
-  bddid(B, ID), !, 
+write_bdd(B, Indent, _, Ids-Next, Ids-Next) :-
+  edge_key(B, Key),
+  get_assoc(Key, Ids, ID), !,
   tab(4+Indent),
-  write_node(ID).
+  write_edge(B, ID).
 
-write_bdd(B, Indent, _) :-
-  B = bdd(leaf, Val, _), !,
-  generate_id(ID), 
-  assert(bddid(B, ID)),
+write_bdd(B, Indent, _, Ids-ID, Ids1-Next) :-
+  leaf(B, Val), !,
+  put_assoc(Val, Ids, ID, Ids1),
+  Next is ID + 1,
   write_node(ID),
   tab(Indent),
   write(Val).
 
-write_bdd(B, Indent, Write) :-
-  B = bdd(N, False, True),
-  generate_id(ID),
-  assert(bddid(B, ID)),
+write_bdd(B, Indent, Write, Ids-ID, State) :-
+  edge_key(B, Key),
+  Node is Key << 1,
+  node(Node, N, False, True),
+  put_assoc(Key, Ids, ID, Ids1),
+  Next is ID + 1,
   write_node(ID),
   tab(Indent),
+  write_complement(B),
   call(Write,N), nl,
   Indent1 is Indent + 3,
-  write_bdd(False,  Indent1, Write), nl,
-  write_bdd(True,   Indent1, Write), nl.
+  write_bdd(False,  Indent1, Write, Ids1-Next, State1), nl,
+  write_bdd(True,   Indent1, Write, State1, State), nl.
+
+%  edge_key(B, Key) - Key is the value of a leaf,
+%    or the identifier of the node of B.
+%  complement(B, C) - C is the complement bit of the edge B,
+%    which is 0 for the leaves.
+%  write_complement(B) - write ~ if B is complemented.
+%  write_edge(B, ID)    - write the ID of a node written before,
+%                         marked ~ if B is complemented.
+
+edge_key(B, Val) :-
+  leaf(B, Val), !.
+edge_key(B, ID) :-
+  ID is B >> 1.
+
+complement(B, 0) :-
+  leaf(B, _), !.
+complement(B, C) :-
+  C is B /\ 1.
+
+write_complement(B) :-
+  complement(B, 1), !,
+  write('~').
+write_complement(_).
+
+write_edge(B, ID) :-
+  complement(B, 1), !,
+  write('~['), write(ID), write('] ').
+write_edge(_, ID) :-
+  write_node(ID).
 
 %  Default is write a variable as vN.
 
@@ -73,9 +129,152 @@ width(ID) :- ID < 100, !, write(' ').
 width(ID) :- ID <  10, !, write(' ').
 width(_).
 
-%  generate_id(id(ID))  - increment the id.
+%  with_output(Stream, Goal) - call Goal with output to Stream.
+
+with_output(Stream, Goal) :-
+  current_output(Old),
+  setup_call_cleanup(
+    set_output(Stream),
+    Goal,
+    set_output(Old)).
+
+
+%  write_dot(Stream, Bs, Write)
+%    - write the BDDs in the list Bs as a Graphviz graph.
+%  write_graphml(Stream, Bs, Write)
+%    - write the BDDs in the list Bs as a GraphML graph.
+%  write_dot/2 and write_graphml/2 use write_atom.
+%
+%  As in write_bdd, each node of the unique table is a node of the
+%    graph that is written once, even if the BDDs share it or reach
+%    it by complemented edges. The False edge of a node is dashed
+%    in Graphviz and a complemented edge has the arrowhead odot;
+%    in GraphML, each edge has a value false or true and
+%    a complement false or true. Each BDD of the list has a root
+%    node r1, r2, ... with an edge to the node of the BDD,
+%    so that a complemented BDD is shown.
+%
+%  graph(Format, B, Write, ID, Ids0, Ids) - write the nodes of B
+%    that have not been written; ID is the ID of its root.
+
+write_dot(Stream, Bs) :-
+  write_dot(Stream, Bs, write_atom).
+
+write_dot(Stream, Bs, Write) :-
+  with_output(Stream, write_graph(dot, Bs, Write)).
+
+write_graphml(Stream, Bs) :-
+  write_graphml(Stream, Bs, write_atom).
+
+write_graphml(Stream, Bs, Write) :-
+  with_output(Stream, write_graph(graphml, Bs, Write)).
+
+write_graph(Format, Bs, Write) :-
+  header(Format),
+  empty_assoc(Empty),
+  length(Bs, K),
+  numlist(1, K, Roots),
+  foldl(root_graph(Format, Write), Bs, Roots, Empty-1, _),
+  trailer(Format).
+
+root_graph(Format, Write, B, Root, State0, State) :-
+  graph(Format, B, Write, ID, State0, State),
+  graph_root(Format, Root),
+  complement(B, C),
+  graph_edge(Format, r(Root), ID, true, C).
+
+graph(_, B, _, ID, Ids-Next, Ids-Next) :-
+  edge_key(B, Key),
+  get_assoc(Key, Ids, ID), !.
+
+graph(Format, B, _, ID, Ids-ID, Ids1-Next) :-
+  leaf(B, Val), !,
+  put_assoc(Val, Ids, ID, Ids1),
+  Next is ID + 1,
+  graph_leaf(Format, ID, Val).
+
+graph(Format, B, Write, ID, Ids-ID, State) :-
+  edge_key(B, Key),
+  Node is Key << 1,
+  node(Node, N, False, True),
+  put_assoc(Key, Ids, ID, Ids1),
+  Next is ID + 1,
+  graph_node(Format, ID, N, Write),
+  graph(Format, False, Write, IDFalse, Ids1-Next, State1),
+  graph(Format, True,  Write, IDTrue,  State1, State),
+  complement(False, CFalse),
+  complement(True,  CTrue),
+  graph_edge(Format, ID, IDFalse, false, CFalse),
+  graph_edge(Format, ID, IDTrue,  true,  CTrue).
+
+%  header(Format), trailer(Format) - start and end of the graph.
+%  graph_leaf(Format, ID, Val)     - a leaf with value Val.
+%  graph_node(Format, ID, N, Write) - a node for variable N.
+%  graph_root(Format, Root)        - the root node of a BDD.
+%  graph_edge(Format, ID1, ID2, Value, C) - the Value edge from
+%    node ID1 (or r(Root)) to node ID2, complemented if C is 1.
+
+header(dot) :-
+  write('digraph bdd {'), nl.
+header(graphml) :-
+  write('<?xml version="1.0" encoding="UTF-8"?>'), nl,
+  write('<graphml xmlns="http://graphml.graphdrawing.org/xmlns">'), nl,
+  write('  <key id="label" for="node" attr.name="label" attr.type="string"/>'),
+  nl,
+  write('  <key id="value" for="edge" attr.name="value" attr.type="boolean"/>'),
+  nl,
+  write('  <key id="complement" for="edge" attr.name="complement" attr.type="boolean"/>'),
+  nl,
+  write('  <graph id="bdd" edgedefault="directed">'), nl.
+
+trailer(dot) :-
+  write('}'), nl.
+trailer(graphml) :-
+  write('  </graph>'), nl,
+  write('</graphml>'), nl.
+
+graph_leaf(dot, ID, Val) :-
+  format('  n~w [label="~w", shape=box];~n', [ID, Val]).
+graph_leaf(graphml, ID, Val) :-
+  format('    <node id="n~w"><data key="label">~w</data></node>~n',
+    [ID, Val]).
+
+graph_node(dot, ID, N, Write) :-
+  format('  n~w [label="', [ID]),
+  call(Write, N),
+  write('"];'), nl.
+graph_node(graphml, ID, N, Write) :-
+  format('    <node id="n~w"><data key="label">', [ID]),
+  call(Write, N),
+  write('</data></node>'), nl.
+
+graph_root(dot, Root) :-
+  format('  r~w [label="~w", shape=plaintext];~n', [Root, Root]).
+graph_root(graphml, Root) :-
+  format('    <node id="r~w"><data key="label">~w</data></node>~n',
+    [Root, Root]).
+
+graph_edge(dot, ID1, ID2, Value, C) :-
+  graph_source(ID1, Source),
+  format('  ~w -> n~w', [Source, ID2]),
+  dot_style(Value, C),
+  write(';'), nl.
+graph_edge(graphml, ID1, ID2, Value, C) :-
+  graph_source(ID1, Source),
+  boolean(C, Complement),
+  format('    <edge source="~w" target="n~w">', [Source, ID2]),
+  format('<data key="value">~w</data>', [Value]),
+  format('<data key="complement">~w</data></edge>~n', [Complement]).
+
+graph_source(r(Root), Source) :- !,
+  format(atom(Source), 'r~w', [Root]).
+graph_source(ID, Source) :-
+  format(atom(Source), 'n~w', [ID]).
+
+dot_style(true,  0).
+dot_style(false, 0) :- write(' [style=dashed]').
+dot_style(true,  1) :- write(' [arrowhead=odot]').
+dot_style(false, 1) :- write(' [style=dashed, arrowhead=odot]').
 
-generate_id(ID) :-
-  retract(id(N)), !, ID is N + 1, assert(id(ID)).
-generate_id(1)  :-
-  assert(id(1)).
+boolean(0, false).
+boolean(1, true).
@@ -0,0 +1,105 @@
+% Copyright 2000-2012 by M. Ben-Ari. GNU GPL. See prolog.pdf.
+
+%  Test program for bit vectors.
+
+user:file_search_path(common,'../common').
+  :- ensure_loaded(bdd).
+  :- ensure_loaded(bddwrite).
+  :- ensure_loaded(bvec).
+
+%  equal(Name, V1, V2) - check that the vectors V1 and V2
+%    are the same BDDs.
+
+equal(Name, V1, V2) :-
+  write(Name),
+  (V1 == V2 -> write(' equal') ; write(' not equal')), nl.
+
+%  size(Name, Vec) - write the number of nodes of Vec.
+
+size(Name, Vec) :-
+  foldl(bit_size, Vec, 0, Size),
+  write(Name), write(' has '), write(Size), write(' nodes'), nl.
+
+bit_size(B, Size0, Size) :-
+  bdd_size(B, Size1),
+  Size is Size0 + Size1.
+
+%  t1 - identities of addition and subtraction.
+
+t1 :-
+  clear_bdd,
+  bvec_vars(2, 4, 1, [A, B]),
+  bvec_add(A, B, S1),
+  bvec_add(B, A, S2),
+  equal('a+b = b+a', S1, S2),
+  bvec_sub(S1, B, D),
+  equal('a+b-b = a', D, A),
+  bvec_sub(A, A, Z),
+  bvec_const(4, 0, Zero),
+  equal('a-a = 0', Z, Zero),
+  size('a+b', S1).
+
+%  t2 - multiplication and shifts.
+
+t2 :-
+  clear_bdd,
+  bvec_vars(2, 4, 1, [A, B]),
+  bvec_const(4, 2, Two),
+  bvec_mul(A, Two, P1),
+  bvec_shl(A, 1, P2),
+  equal('a*2 = a<<1', P1, P2),
+  bvec_add(A, A, P3),
+  equal('a*2 = a+a', P1, P3),
+  bvec_mul(A, B, P4),
+  bvec_mul(B, A, P5),
+  equal('a*b = b*a', P4, P5),
+  bvec_shr(A, 1, H),
+  bvec_shl(H, 1, E),
+  bvec_apply(and, A, [0, 1, 1, 1], E1),
+  equal('(a>>1)<<1 = a and 1110', E, E1).
+
+%  t3 - comparisons; the number of models of a < b
+%    is 8*15 = 120 for two 4-bit vectors.
+
+t3 :-
+  clear_bdd,
+  bvec_vars(2, 4, 1, [A, B]),
+  bvec_less(A, B, L),
+  bvec_less(B, A, G),
+  bvec_equal(A, B, E),
+  apply(L, or, G, LorG),
+  neg(E, NotE),
+  equal('a<b or b<a = not a=b', [LorG], [NotE]),
+  bvec_less_equal(A, B, LE),
+  apply(L, or, E, LorE),
+  equal('a=<b = a<b or a=b', [LE], [LorE]),
+  numlist(1, 8, Vars),
+  sat_count(L, Vars, Count),
+  write('a<b has '), write(Count), write(' models'), nl,
+  bdd_size(L, Size),
+  write('a<b has '), write(Size), write(' nodes'), nl.
+
+%  t4 - the order: an adder with interleaved variables and with
+%    the variables of each vector together.
+
+t4 :-
+  clear_bdd,
+  bvec_vars(2, 8, 1, [A1, B1]),
+  bvec_add(A1, B1, S1),
+  size('Interleaved a+b', S1),
+  clear_bdd,
+  bvec_vars(1, 8, 1, [A2]),
+  bvec_vars(1, 8, 9, [B2]),
+  bvec_add(A2, B2, S2),
+  size('Separate a+b', S2).
+
+%  t5 - a one-bit adder: compare with tadd in bdd-t.
+
+t5 :-
+  clear_bdd,
+  bvec_vars(2, 1, 1, [A, B]),
+  bvec_add(A, B, Carry, [Sum]),
+  write_bdd(Sum),
+  write_bdd(Carry).
+
+tall :- t1, t2, t3, t4, t5.
@@ -0,0 +1,165 @@
+% Copyright 2000-2012 by M. Ben-Ari. GNU GPL. See prolog.pdf.
+
+%  Bit vectors of BDDs
+
+:- module(bvec,
+     [bvec_vars/4,
+      bvec_const/3,
+      bvec_apply/4,
+      bvec_not/2,
+      bvec_ite/4,
+      bvec_add/3,
+      bvec_add/4,
+      bvec_sub/3,
+      bvec_mul/3,
+      bvec_shl/3,
+      bvec_shr/3,
+      bvec_equal/3,
+      bvec_less/3,
+      bvec_less_equal/3]).
+
+:- use_module(bdd).
+
+%  A bit vector is a list of BDDs, the least significant bit first;
+%    the value of the vector for an assignment is the unsigned
+%    integer whose bits are the values of the BDDs.
+%  The operations are on vectors of the same width and are
+%    modulo 2^Width, except bvec_add/4 which returns the carry.
+%  Comparisons return a single BDD.
+
+%  bvec_vars(Count, Width, First, Vecs) - Vecs is a list of Count
+%    vectors of Width bits, whose bits are literals of variables
+%    from First on. The variables are interleaved: the bits of the
+%    same weight in all vectors are adjacent in the order, starting
+%    with the most significant bits. With this order the BDDs of
+%    addition and comparison grow linearly with the width, while
+%    they grow exponentially if each vector has consecutive variables.
+
+bvec_vars(Count, Width, First, Vecs) :-
+  Last is Count - 1,
+  numlist(0, Last, Ks),
+  maplist(bvec_var(Count, Width, First), Ks, Vecs).
+
+bvec_var(Count, Width, First, K, Vec) :-
+  Top is Width - 1,
+  numlist(0, Top, Is),
+  maplist(bit_var(Count, Width, First, K), Is, Vec).
+
+bit_var(Count, Width, First, K, I, B) :-
+  N is First + (Width - 1 - I) * Count + K,
+  literal(pos, N, B).
+
+%  bvec_const(Width, Value, Vec) - Vec is the constant Value,
+%    its bits are the leaves 0 (f) and 1 (t).
+
+bvec_const(0, _, []) :- !.
+bvec_const(Width, Value, [B | Vec]) :-
+  B is Value /\ 1,
+  Value1 is Value >> 1,
+  Width1 is Width - 1,
+  bvec_const(Width1, Value1, Vec).
+
+%  bvec_apply(Opr, A, B, R) - apply Opr to each pair of bits.
+%  bvec_not(A, R)           - negate each bit.
+%  bvec_ite(C, A, B, R)     - R is A if the BDD C is true, else B.
+
+bvec_apply(Opr, A, B, R) :-
+  maplist(apply_bit(Opr), A, B, R).
+
+apply_bit(Opr, B1, B2, B) :-
+  apply(B1, Opr, B2, B).
+
+bvec_not(A, R) :-
+  maplist(neg, A, R).
+
+bvec_ite(C, A, B, R) :-
+  maplist(ite(C), A, B, R).
+
+%  bvec_add(A, B, S)        - S = A + B.
+%  bvec_add(A, B, Carry, S) - Carry is the carry out of the last bit.
+%    A ripple-carry adder: for each bit,
+%      sum   = A xor B xor C
+%      carry = (A and B) or (C and (A xor B))
+%  bvec_sub(A, B, D) - D = A - B = A + not B + 1.
+
+bvec_add(A, B, S) :-
+  bvec_add(A, B, _, S).
+
+bvec_add(A, B, Carry, S) :-
+  add(A, B, 0, Carry, S).
+
+add([], [], C, C, []).
+add([A | As], [B | Bs], C0, C, [S | Ss]) :-
+  apply(A, xor, B, AxorB),
+  apply(AxorB, xor, C0, S),
+  apply(A, and, B, AandB),
+  apply(C0, and, AxorB, CandAxorB),
+  apply(AandB, or, CandAxorB, C1),
+  add(As, Bs, C1, C, Ss).
+
+bvec_sub(A, B, D) :-
+  bvec_not(B, NotB),
+  add(A, NotB, 1, _, D).
+
+%  bvec_mul(A, B, P) - P = A * B by shift and add: for each bit B_i
+%    of B (least significant first), add A shifted left by i
+%    if B_i is true.
+
+bvec_mul(A, B, P) :-
+  length(A, Width),
+  bvec_const(Width, 0, Zero),
+  mul(B, A, Zero, P).
+
+mul([], _, P, P).
+mul([B | Bs], A, P0, P) :-
+  maplist(conjoin(B), A, Partial),
+  bvec_add(P0, Partial, P1),
+  bvec_shl(A, 1, A1),
+  mul(Bs, A1, P1, P).
+
+conjoin(B1, B2, B) :-
+  apply(B1, and, B2, B).
+
+%  bvec_shl(A, K, R) - shift left by K bits, filling with 0 (f).
+%  bvec_shr(A, K, R) - shift right by K bits, filling with 0 (f).
+
+bvec_shl(A, K, R) :-
+  length(A, Width),
+  Keep is max(0, Width - K),
+  Zeros is Width - Keep,
+  length(High, Keep),
+  append(High, _, A),
+  bvec_const(Zeros, 0, Low),
+  append(Low, High, R).
+
+bvec_shr(A, K, R) :-
+  length(A, Width),
+  Drop is min(K, Width),
+  length(Low, Drop),
+  append(Low, High, A),
+  bvec_const(Drop, 0, Zeros),
+  append(High, Zeros, R).
+
+%  bvec_equal(A, B, E)      - E is the BDD of A = B.
+%  bvec_less(A, B, L)       - L is the BDD of A < B (unsigned).
+%  bvec_less_equal(A, B, L) - L is the BDD of A =< B.
+%    less computes from the least significant bit:
+%      L_i = (not A_i and B_i) or ((A_i eqv B_i) and L_{i-1}),
+%    starting with L_{-1} = f for <, and t for =<.
+
+bvec_equal(A, B, E) :-
+  bvec_apply(eqv, A, B, Bits),
+  foldl(conjoin, Bits, 1, E).
+
+bvec_less(A, B, L) :-
+  foldl(less, A, B, 0, L).
+
+bvec_less_equal(A, B, L) :-
+  foldl(less, A, B, 1, L).
+
+less(A, B, L0, L) :-
+  neg(A, NotA),
+  apply(NotA, and, B, Less),
+  apply(A, eqv, B, Same),
+  apply(Same, and, L0, SameAndL0),
+  apply(Less, or, SameAndL0, L).
@@ -32,3 +32,148 @@ t3 :- test_tableau(
 t4 :- test_tableau(
    ~ (p v q) ^ ~ ~ (p v q)
    ).
+
+%  test_closed(Fml) - write if the tableau for Fml is closed,
+%    without writing the tableau.
+%  closed(Tab) - all the leaves of Tab are closed.
+
+test_closed(Fml) :-
+  to_internal(Fml, FmlI),
+  create_tableau(FmlI, Tab),
+  ( closed(Tab) -> write('Closed') ; write('Open') ), nl.
+
+closed(t(_, closed, empty)) :- !.
+closed(t(_, open, empty)) :- !, fail.
+closed(t(_, Left, empty)) :- !, closed(Left).
+closed(t(_, Left, Right)) :- closed(Left), closed(Right).
+
+%  chain(N, Fml) - p0 ^ (p0 --> p1) ^ ... ^ (pN-1 --> pN) ^ ~pN.
+
+chain(N, Fml) :-
+  N1 is N - 1,
+  numlist(0, N1, Is),
+  maplist(implication, Is, Imps),
+  atom_concat(p, N, PN),
+  foldl(conj, Imps, p0, Fml0),
+  Fml = Fml0 ^ ~ PN.
+
+implication(I, P --> Q) :-
+  atom_concat(p, I, P),
+  I1 is I + 1,
+  atom_concat(p, I1, Q).
+
+conj(F, F0, F0 ^ F).
+
+t5 :- chain(50, Fml), test_closed(Fml).
+t6 :- chain(50, Fml0), Fml0 = Fml ^ _, test_closed(Fml).
+
+%  test_decide(Fml) - write the result of the decision procedure.
+
+test_decide(Fml) :-
+  to_internal(Fml, FmlI),
+  decide_tableau(FmlI, Result),
+  write(Result), nl.
+
+t7 :- test_decide(~ ( (p --> q --> r ) --> (p --> q) --> (p --> r) )).
+t8 :- test_decide( (p --> q) --> (r v p ) --> (r v q) ).
+t9 :- test_decide( ~ (p v q) ^ ~ ~ (p v q) ).
+t10 :- chain(100, Fml), test_decide(Fml).
+
+%  compare_betas(Fml) - write the number of nodes of the tableau
+%    for Fml with each strategy for choosing the beta formula.
+%  size(Tab, N) - N is the number of nodes of Tab.
+
+compare_betas(Fml) :-
+  to_internal(Fml, FmlI),
+  forall(member(S, [first, closing, atoms, occurrences]),
+    ( create_tableau(FmlI, Tab, [beta(S)]),
+      size(Tab, N),
+      write(S), write(': '), write(N), nl )).
+
+size(t(_, closed, empty), 1) :- !.
+size(t(_, open,   empty), 1) :- !.
+size(t(_, Left,   empty), N) :- !,
+  size(Left, N1),
+  N is N1 + 1.
+size(t(_, Left,   Right), N) :-
+  size(Left, N1),
+  size(Right, N2),
+  N is N1 + N2 + 1.
+
+%  irrelevant(N, Fml) - (p v q) ^ (aN v bN) ^ ... ^ (a1 v b1) ^ ~p ^ ~q.
+%    The disjunctions of ai and bi come before p v q in the node,
+%    so the first strategy builds 2^N branches before it closes
+%    each of them with p v q.
+
+irrelevant(N, (p v q) ^ Fml) :-
+  numlist(1, N, Is),
+  maplist(disjunction, Is, Ds),
+  foldl(conj_right, Ds, ~ p ^ ~ q, Fml).
+
+conj_right(F, F0, F ^ F0).
+
+disjunction(I, A v B) :-
+  atom_concat(a, I, A),
+  atom_concat(b, I, B).
+
+t11 :- compare_betas(
+  p ^
+  (p --> (q v r) ^ ~ (q ^ r)) ^
+  (p --> (s v t) ^ ~ (s ^ t)) ^
+  (s --> q) ^
+  (~ r --> t) ^ 
+  (t --> s)
+      ).
+t12 :- irrelevant(6, Fml), compare_betas(Fml).
+t13 :- irrelevant(6, Fml), to_internal(Fml, FmlI),
+  decide_tableau(FmlI, Result, [beta(closing)]),
+  write(Result), nl.
+
+%  The tableau of t3 extended in parallel below the second level
+%    of beta rules; the output is the same as that of t3.
+
+t14 :- to_internal(
+  p ^
+  (p --> (q v r) ^ ~ (q ^ r)) ^
+  (p --> (s v t) ^ ~ (s ^ t)) ^
+  (s --> q) ^
+  (~ r --> t) ^ 
+  (t --> s), FmlI),
+  create_tableau(FmlI, Tab, [parallel(2)]),
+  write_tableau(Tab).
+t15 :- irrelevant(6, Fml), to_internal(Fml, FmlI),
+  create_tableau(FmlI, Tab, [parallel(3)]),
+  size(Tab, N), write(N), nl.
+t16 :- to_internal( (p --> q) --> (r v p ) --> (r v q), FmlI),
+  decide_tableau(FmlI, Result, [parallel(2)]),
+  write(Result), nl.
+t17 :- irrelevant(6, Fml), to_internal(Fml, FmlI),
+  decide_tableau(FmlI, Result, [parallel(3)]),
+  write(Result), nl.
+
+%  test_unsupported(Fml, Options) - write the formula for which
+%    there is no rule, instead of a result.
+
+test_unsupported(Fml, Options) :-
+  to_internal(Fml, FmlI),
+  catch(decide_tableau(FmlI, Result, Options),
+        error(domain_error(tableau_formula, F), _),
+        Result = unsupported(F)),
+  write(Result), nl.
+
+t18 :- test_unsupported(p + q, []).
+t19 :- test_unsupported(p ^ (q + r) ^ ~ p, []).
+t20 :- test_unsupported((p v q) ^ (p + q), [parallel(1)]).
+
+%  repeated(Goal, Result) - write the list of the different
+%    values of Result in ten runs of Goal.
+%  In t21 the first branch of the frontier (p) is closed and the
+%    second (q) is open, so every run must find the open branch.
+
+repeated(Goal, Result) :-
+  findall(Result, (between(1, 10, _), once(Goal)), Results),
+  sort(Results, Different),
+  write(Different), nl.
+
+t21 :- to_internal((p v q) ^ ~ p, FmlI),
+  repeated(decide_tableau(FmlI, Result, [parallel(1)]), Result).
@@ -14,67 +14,431 @@
 %     variables for the subtrees.
 
 create_tableau(Fml, Tab) :-
+  create_tableau(Fml, Tab, []).
+
+%  create_tableau(Fml, Tab, Options) - create the tableau with Options:
+%    beta(Strategy)  - the strategy for choosing the beta formula
+%                      (see select_beta), the default is first,
+%    parallel(Depth) - the subtrees below the first Depth beta rules
+%                      of each branch are extended concurrently
+%                      (see extend_parallel).
+
+create_tableau(Fml, Tab, Options) :-
+  beta_option(Options, Strategy),
   Tab = t([Fml], _, _), 
-  extend_tableau(Tab).
+  empty_branch(Branch0),
+  add_fmls([Fml], Branch0, Branch),
+  ( member(parallel(Depth), Options) ->
+      extend_parallel(Tab, Branch, Strategy, Depth)
+  ;   extend_tableau(Tab, Branch, Strategy) ).
 
-%  extend_tableau(t(Fmls, Left, Right) - Perform one tableau rule.
+beta_option(Options, Strategy) :-
+  member(beta(Strategy), Options), !.
+beta_option(_, first).
+
+%  extend_tableau(t(Fmls, Left, Right), Branch, Strategy) -
+%    Perform one tableau rule.
+%    Branch is the index of Fmls (see below).
 %    1. Check for a pair of contradicatory formulas in Fmls (closed).
 %    2. Check if Fmls contains only literals (open).
 %    3. Perform an alpha or beta rule:
 %         check first for alpha rules that apply anywhere in the list,
-%         and only then look for beta rules.
-
-extend_tableau(t(Fmls, closed, empty)) :-
-  check_closed(Fmls), !.
-extend_tableau(t(Fmls, open,   empty)) :- 
-  contains_only_literals(Fmls), !.
-extend_tableau(t(Fmls, Left,   empty)) :-
-  alpha_rule(Fmls, Fmls1), !,
+%         and only then look for beta rules,
+%         the beta formula is chosen by Strategy.
+
+extend_tableau(t(_, closed, empty), Branch, _) :-
+  branch_closed(Branch), !.
+extend_tableau(t(_, open,   empty), Branch, _) :- 
+  contains_only_literals(Branch), !.
+extend_tableau(t(_, Left,   empty), Branch, Strategy) :-
+  alpha_rule(Branch, Branch1), !,
+  branch_fmls(Branch1, Fmls1),
   Left = t(Fmls1, _, _),
-  extend_tableau(Left).
-extend_tableau(t(Fmls, Left,   Right)) :-
-  beta_rule(Fmls, Fmls1, Fmls2),
+  extend_tableau(Left, Branch1, Strategy).
+extend_tableau(t(_, Left,   Right), Branch, Strategy) :-
+  beta_rule(Strategy, Branch, Branch1, Branch2),
+  branch_fmls(Branch1, Fmls1),
+  branch_fmls(Branch2, Fmls2),
   Left  = t(Fmls1, _, _),
   Right = t(Fmls2, _, _),
-  extend_tableau(Left),
-  extend_tableau(Right).
+  extend_tableau(Left, Branch1, Strategy),
+  extend_tableau(Right, Branch2, Strategy).
 
-%  check_closed(Fmls)
-%    Fmls is closed if it contains contradictory formulas.
-%  contains_only_literals(Fmls)
-%    Traverse Fmls list checking that each is a literal.
-%  literal(Fml)
-%    Fml is a propositional letter or a negation of one.
+%  decide_tableau(Fml, Result) - decide if Fml is satisfiable
+%    without building the tableau:
+%    Result is open(Literals), where Literals are the literals of
+%    the first open branch (a model of Fml), or closed.
+%  decide_tableau(Fml, Result, Options) - the options are those
+%    of create_tableau.
+%  open_branch(Branch, Strategy, Literals) - extend the branch depth-first;
+%    succeeds if the branch has an open leaf with Literals.
+%    Only the nodes of the current branch are kept,
+%    and the search stops at the first open leaf.
+%  A node that is not closed, but to which no rule applies, contains
+%    a formula with an operator that has no rule (xor, nand, nor);
+%    the branch is neither open nor closed, so a domain_error is
+%    thrown by unsupported.
 
-check_closed(Fmls) :-
-  member(F, Fmls), member(neg F, Fmls).
+decide_tableau(Fml, Result) :-
+  decide_tableau(Fml, Result, []).
 
-contains_only_literals([]).
-contains_only_literals([Fml | Tail]) :-
-  literal(Fml),
-  contains_only_literals(Tail).
+decide_tableau(Fml, Result, Options) :-
+  beta_option(Options, Strategy),
+  empty_branch(none, Branch0),
+  add_fmls([Fml], Branch0, Branch),
+  ( open_leaf(Options, Branch, Strategy, Literals) ->
+      Result = open(Literals)
+  ;   Result = closed ).
 
-literal(Fml)  :- atom(Fml).
-literal(neg Fml) :- atom(Fml).
+open_leaf(Options, Branch, Strategy, Literals) :-
+  member(parallel(Depth), Options), !,
+  decide_parallel(Branch, Strategy, Depth, Literals).
+open_leaf(_, Branch, Strategy, Literals) :-
+  open_branch(Branch, Strategy, Literals).
+
+open_branch(Branch, _, _) :-
+  branch_closed(Branch), !,
+  fail.
+open_branch(Branch, _, Literals) :-
+  contains_only_literals(Branch), !,
+  leaf_literals(Branch, Literals).
+open_branch(Branch, Strategy, Literals) :-
+  alpha_rule(Branch, Branch1), !,
+  open_branch(Branch1, Strategy, Literals).
+open_branch(Branch, Strategy, Literals) :-
+  beta_rule(Strategy, Branch, Branch1, Branch2), !,
+  ( open_branch(Branch1, Strategy, Literals)
+  ; open_branch(Branch2, Strategy, Literals) ).
+open_branch(Branch, _, _) :-
+  unsupported(Branch).
+
+unsupported(b(_, _, _, _, _, [F | _], _, _, _)) :-
+  throw(error(domain_error(tableau_formula, F), _)).
+
+%  extend_parallel(Tab, Branch, Strategy, Depth) - the tableau
+%    is extended as by extend_tableau until Depth beta rules have
+%    been performed on a branch; the subtrees at this depth are
+%    independent, and they are extended concurrently by a thread
+%    for each CPU. The tableau is the same as that of extend_tableau.
+%  decide_parallel(Branch, Strategy, Depth, Literals) - the branches
+%    at this depth are searched concurrently by open_branch and the
+%    search stops when an open leaf is found in any of them; the
+%    other threads are cancelled. Literals are those of the first
+%    open leaf found, which need not be the first in the order of
+%    open_branch. A closed branch fails without stopping the other
+%    threads (on_fail(continue)), so decide_parallel fails only if
+%    all the branches are closed; errors thrown by open_branch are
+%    passed on by first_solution.
+%  frontier_goals(Tab, Branch, Strategy, Depth, Goals0, Goals)
+%    Goals0-Goals are the goals for extending the subtrees at depth
+%    Depth, and the nodes above them are instantiated.
+%  frontier_branches(Branch, Strategy, Depth, Branches0, Branches)
+%    Branches0-Branches are the branches at depth Depth that are
+%    not closed.
+
+extend_parallel(Tab, Branch, Strategy, Depth) :-
+  frontier_goals(Tab, Branch, Strategy, Depth, Goals, []),
+  tableau_threads(Threads),
+  concurrent(Threads, Goals, []).
+
+decide_parallel(Branch, Strategy, Depth, Literals) :-
+  frontier_branches(Branch, Strategy, Depth, Branches, []),
+  Branches = [_ | _],
+  maplist(branch_goal(Strategy, Literals), Branches, Goals),
+  first_solution(Literals, Goals, [on_fail(continue)]).
+
+branch_goal(Strategy, Literals, Branch,
+            open_branch(Branch, Strategy, Literals)).
+
+frontier_goals(Tab, Branch, Strategy, 0,
+               [extend_tableau(Tab, Branch, Strategy) | Goals], Goals) :- !.
+frontier_goals(t(_, closed, empty), Branch, _, _, Goals, Goals) :-
+  branch_closed(Branch), !.
+frontier_goals(t(_, open,   empty), Branch, _, _, Goals, Goals) :- 
+  contains_only_literals(Branch), !.
+frontier_goals(t(_, Left,   empty), Branch, Strategy, Depth, Goals0, Goals) :-
+  alpha_rule(Branch, Branch1), !,
+  branch_fmls(Branch1, Fmls1),
+  Left = t(Fmls1, _, _),
+  frontier_goals(Left, Branch1, Strategy, Depth, Goals0, Goals).
+frontier_goals(t(_, Left,   Right), Branch, Strategy, Depth, Goals0, Goals) :-
+  beta_rule(Strategy, Branch, Branch1, Branch2), !,
+  branch_fmls(Branch1, Fmls1),
+  branch_fmls(Branch2, Fmls2),
+  Left  = t(Fmls1, _, _),
+  Right = t(Fmls2, _, _),
+  Depth1 is Depth - 1,
+  frontier_goals(Left, Branch1, Strategy, Depth1, Goals0, Goals1),
+  frontier_goals(Right, Branch2, Strategy, Depth1, Goals1, Goals).
+
+frontier_branches(Branch, _, 0, [Branch | Branches], Branches) :- !.
+frontier_branches(Branch, _, _, Branches, Branches) :-
+  branch_closed(Branch), !.
+frontier_branches(Branch, _, _, [Branch | Branches], Branches) :-
+  contains_only_literals(Branch), !.
+frontier_branches(Branch, Strategy, Depth, Branches0, Branches) :-
+  alpha_rule(Branch, Branch1), !,
+  frontier_branches(Branch1, Strategy, Depth, Branches0, Branches).
+frontier_branches(Branch, Strategy, Depth, Branches0, Branches) :-
+  beta_rule(Strategy, Branch, Branch1, Branch2), !,
+  Depth1 is Depth - 1,
+  frontier_branches(Branch1, Strategy, Depth1, Branches0, Branches1),
+  frontier_branches(Branch2, Strategy, Depth1, Branches1, Branches).
+frontier_branches(Branch, _, _, _, _) :-
+  unsupported(Branch).
+
+tableau_threads(Threads) :-
+  current_prolog_flag(cpu_count, Threads).
+
+%  The formulas of a node are indexed by the term
+%    b(Fmls, Set, Alphas, DNegs, Betas, Others, Count, Atoms, Closed):
+%    Fmls   - the list of formulas of the node, or none if the
+%             formulas are not printed (decide_tableau),
+%    Set    - association list from each formula of the node to the
+%             number of its occurrences,
+%    Alphas, DNegs, Betas, Others - the formulas of the node for
+%             which alpha is defined, the double negations, the
+%             formulas for which beta is defined, and the other
+%             formulas that are not literals, each in the order of
+%             the node,
+%    Count  - the number of formulas in Set that are not literals,
+%    Atoms  - association list from each atom of the node to Lits-Occs,
+%             the number of occurrences of literals of the atom and
+%             of formulas containing the atom (see select_beta),
+%    Closed - yes if the node contains contradictory formulas, else no.
+%  New formulas are added at the front of Fmls and of the lists,
+%    so the first formula of a list is the first of its kind.
+%  A node is closed if it contains F and neg F. Since the parent
+%    of a node is not closed, this is checked only for each new
+%    formula F: whether neg F, or G if F is neg G, is in the Set.
+%  A node contains only literals if Count is zero.
+%  When a formula is expanded, it is deleted from Set, as are the
+%    other occurrences of the same formula. It is deleted from its
+%    list only if it is the first formula of the list, together with
+%    the formulas following it that are no longer in Set. Otherwise
+%    (a beta chosen by a strategy, or a second occurrence), the list
+%    keeps the formula and it is skipped when it is found not in Set.
+%    So the first formula of a list is always in Set, and a rule is
+%    applied in time logarithmic in the size of the node. Only Fmls
+%    is updated by deleting from a list, because it is printed.
+
+empty_branch(Branch) :-
+  empty_branch([], Branch).
+
+empty_branch(Fmls, b(Fmls, Set, [], [], [], [], 0, Atoms, no)) :-
+  empty_assoc(Set),
+  empty_assoc(Atoms).
+
+branch_fmls(b(Fmls, _, _, _, _, _, _, _, _), Fmls).
+
+branch_closed(b(_, _, _, _, _, _, _, _, yes)).
+
+contains_only_literals(b(_, _, _, _, _, _, 0, _, _)).
+
+%  leaf_literals(Branch, Literals) - the literals of an open leaf.
+
+leaf_literals(b(none, Set, _, _, _, _, _, _, _), Literals) :- !,
+  assoc_to_keys(Set, Literals).
+leaf_literals(Branch, Literals) :-
+  branch_fmls(Branch, Literals).
+
+%  add_fmls(Fs, Branch0, Branch) - add the list of formulas Fs
+%    at the front of the node.
+%  add_fml(F, Branch0, Branch)   - add one formula.
+
+add_fmls(Fs, Branch0, Branch) :-
+  reverse(Fs, Reversed),
+  foldl(add_fml, Reversed, Branch0, Branch).
+
+add_fml(F, b(Fmls0, Set0, As0, Ds0, Bs0, Os0, Count0, Atoms0, Closed0),
+           b(Fmls, Set, As, Ds, Bs, Os, Count, Atoms, Closed)) :-
+  push_fml(Fmls0, F, Fmls),
+  ( get_assoc(F, Set0, N) -> true ; N = 0 ),
+  N1 is N + 1,
+  put_assoc(F, Set0, N1, Set),
+  kind(F, Kind),
+  push(Kind, F, As0-Ds0-Bs0-Os0, As-Ds-Bs-Os),
+  count(Kind, N, Count0, Count),
+  lits(Kind, Lits),
+  fml_atoms(F, FAtoms),
+  foldl(count_atom(Lits, 1), FAtoms, Atoms0, Atoms),
+  closes(F, Set0, Closed0, Closed).
+
+push_fml(none, _, none) :- !.
+push_fml(Fmls, F, [F | Fmls]).
+
+%  kind(F, Kind) - Kind is alpha, dneg, beta, literal or other.
 
-%  alpha_rule(Fmls, Fmls1)
-%    Fmls1 is Fmls with an alpha deleted and alpha1, alpha2 added.
-%  beta_rule(Fmls, Fmls1, Fmls2)
-%    Fmls1 (Fmls2) is Fmls with a beta deleted and beta1 (beta2) added.
-
-alpha_rule(Fmls, [A1, A2 | Fmls1]) :-
-  member(A, Fmls),
-  alpha(A, A1, A2), !,
-  delete(Fmls, A, Fmls1).
-alpha_rule(Fmls, [A1 | Fmls1]) :-
-  member(A, Fmls),
+kind(F, alpha) :- alpha(F, _, _), !.
+kind(neg neg _, dneg) :- !.
+kind(F, beta) :- beta(F, _, _), !.
+kind(F, literal) :- literal(F), !.
+kind(_, other).
+
+push(alpha,   F, As-Ds-Bs-Os, [F | As]-Ds-Bs-Os).
+push(dneg,    F, As-Ds-Bs-Os, As-[F | Ds]-Bs-Os).
+push(beta,    F, As-Ds-Bs-Os, As-Ds-[F | Bs]-Os).
+push(literal, _, Lists, Lists).
+push(other,   F, As-Ds-Bs-Os, As-Ds-Bs-[F | Os]).
+
+%  count(Kind, N, Count0, Count) - a formula of Kind with N previous
+%    occurrences is added.
+
+count(literal, _, Count, Count) :- !.
+count(_, 0, Count0, Count) :- !,
+  Count is Count0 + 1.
+count(_, _, Count, Count).
+
+%  lits(Kind, Lits) - a formula of Kind is Lits literal occurrences.
+%  count_atom(Lits, Occs, Atom, Atoms0, Atoms) - add Lits-Occs to the
+%    counts of Atom.
+
+lits(literal, 1) :- !.
+lits(_, 0).
+
+count_atom(Lits, Occs, Atom, Atoms0, Atoms) :-
+  ( get_assoc(Atom, Atoms0, Lits0-Occs0) -> true ; Lits0-Occs0 = 0-0 ),
+  Lits1 is Lits0 + Lits,
+  Occs1 is Occs0 + Occs,
+  put_assoc(Atom, Atoms0, Lits1-Occs1, Atoms).
+
+closes(_, _, yes, yes) :- !.
+closes(F, Set, no, yes) :-
+  get_assoc(neg F, Set, _), !.
+closes(neg F, Set, no, yes) :-
+  get_assoc(F, Set, _), !.
+closes(_, _, no, no).
+
+%  remove_fml(F, Branch0, Branch) - delete all occurrences of the
+%    formula F, which is not a literal.
+
+remove_fml(F, b(Fmls0, Set0, As0, Ds0, Bs0, Os, Count0, Atoms0, Closed),
+              b(Fmls, Set, As, Ds, Bs, Os, Count, Atoms, Closed)) :-
+  delete_fml(Fmls0, F, Fmls),
+  del_assoc(F, Set0, N, Set),
+  kind(F, Kind),
+  pop(Kind, F, Set, As0-Ds0-Bs0, As-Ds-Bs),
+  Count is Count0 - 1,
+  fml_atoms(F, FAtoms),
+  Occs is -N,
+  foldl(count_atom(0, Occs), FAtoms, Atoms0, Atoms).
+
+delete_fml(none, _, none) :- !.
+delete_fml(Fmls0, F, Fmls) :-
+  delete(Fmls0, F, Fmls).
+
+pop(alpha, F, Set, As-Ds-Bs, As1-Ds-Bs) :- drop(As, F, Set, As1).
+pop(dneg,  F, Set, As-Ds-Bs, As-Ds1-Bs) :- drop(Ds, F, Set, Ds1).
+pop(beta,  F, Set, As-Ds-Bs, As-Ds-Bs1) :- drop(Bs, F, Set, Bs1).
+
+%  drop(List, F, Set, List1) - if F is the first formula of List,
+%    delete it and the following formulas that are not in Set.
+
+drop([F1 | List], F, Set, List1) :-
+  F1 == F, !,
+  skip_deleted(List, Set, List1).
+drop(List, _, _, List).
+
+skip_deleted([F | List], Set, List1) :-
+  \+ get_assoc(F, Set, _), !,
+  skip_deleted(List, Set, List1).
+skip_deleted(List, _, List).
+
+%  alpha_rule(Branch, Branch1)
+%    Branch1 is Branch with an alpha deleted and alpha1, alpha2 added.
+%  beta_rule(Strategy, Branch, Branch1, Branch2)
+%    Branch1 (Branch2) is Branch with a beta deleted and
+%    beta1 (beta2) added; the beta is chosen by Strategy.
+%    On backtracking, the other betas are tried.
+
+alpha_rule(Branch, Branch1) :-
+  Branch = b(_, _, [A | _], _, _, _, _, _, _), !,
+  alpha(A, A1, A2),
+  remove_fml(A, Branch, Branch2),
+  add_fmls([A1, A2], Branch2, Branch1).
+alpha_rule(Branch, Branch1) :-
+  Branch = b(_, _, [], [A | _], _, _, _, _, _),
   A = neg neg A1,
-  delete(Fmls, A, Fmls1).
+  remove_fml(A, Branch, Branch2),
+  add_fml(A1, Branch2, Branch1).
   
-beta_rule(Fmls, [B1 | Fmls1], [B2 | Fmls1]) :-
-  member(B, Fmls),
+beta_rule(Strategy, Branch, Branch1, Branch2) :-
+  select_beta(Strategy, Branch, B),
+  beta(B, B1, B2),
+  remove_fml(B, Branch, Branch3),
+  add_fml(B1, Branch3, Branch1),
+  add_fml(B2, Branch3, Branch2).
+
+%  select_beta(Strategy, Branch, B) - B is a beta formula of Branch.
+%    The betas are tried in the order of Strategy:
+%      first       - the order of the formulas in the node,
+%      closing     - first the betas with the most components whose
+%                    complement is in the node, so that the branch
+%                    of the component is closed immediately,
+%      atoms       - first the betas with the fewest atoms that do
+%                    not appear in the literals of the node,
+%      occurrences - first the betas whose atoms occur in the most
+%                    formulas of the node, summed over the atoms.
+%    The atoms and occurrences scores are taken from the counts
+%    of the atoms of the beta in the index, without searching the
+%    formulas of the node.
+%    Betas with the same score are tried in the order of the node
+%    (keysort is stable).
+
+select_beta(first, b(_, Set, _, _, Bs, _, _, _, _), B) :- !,
+  member(B, Bs),
+  get_assoc(B, Set, _).
+select_beta(Strategy, Branch, B) :-
+  Branch = b(_, Set, _, _, Bs0, _, _, _, _),
+  include(in_set(Set), Bs0, Bs),
+  maplist(beta_score(Strategy, Branch), Bs, Keyed),
+  keysort(Keyed, Sorted),
+  member(_-B, Sorted).
+
+in_set(Set, F) :-
+  get_assoc(F, Set, _).
+
+%  beta_score(Strategy, Branch, B, Score-B)
+%    Scores are ordered from the best (smallest) up.
+
+beta_score(closing, b(_, Set, _, _, _, _, _, _, _), B, Score-B) :-
   beta(B, B1, B2),
-  delete(Fmls, B, Fmls1).
+  include(closes_branch(Set), [B1, B2], Closing),
+  length(Closing, N),
+  Score is -N.
+beta_score(atoms, b(_, _, _, _, _, _, _, Atoms, _), B, Score-B) :-
+  fml_atoms(B, BAtoms),
+  exclude(literal_atom(Atoms), BAtoms, New),
+  length(New, Score).
+beta_score(occurrences, b(_, _, _, _, _, _, _, Atoms, _), B, Score-B) :-
+  fml_atoms(B, BAtoms),
+  foldl(atom_occurrences(Atoms), BAtoms, 0, N),
+  Score is -N.
+
+closes_branch(Set, F) :-
+  closes(F, Set, no, yes).
+
+literal_atom(Atoms, Atom) :-
+  get_assoc(Atom, Atoms, Lits-_),
+  Lits > 0.
+
+atom_occurrences(Atoms, Atom, N0, N) :-
+  get_assoc(Atom, Atoms, _-Occs),
+  N is N0 + Occs.
+
+%  fml_atoms(Fml, Atoms) - Atoms is the ordered set of atoms of Fml.
+
+fml_atoms(A, [A]) :- atom(A), !.
+fml_atoms(neg A, Atoms) :- !,
+  fml_atoms(A, Atoms).
+fml_atoms(F, Atoms) :-
+  F =.. [_, A1, A2],
+  fml_atoms(A1, Atoms1),
+  fml_atoms(A2, Atoms2),
+  ord_union(Atoms1, Atoms2, Atoms).
+
+literal(Fml)  :- atom(Fml).
+literal(neg Fml) :- atom(Fml).
 
 %  alpha(A1 opr A2, A1, A2)
 %  beta(A1 opr A2, A1, A2)
@@ -21,3 +21,131 @@ t9  :- create_tt(p + r).
 t10 :- create_tt( (~ p --> ~ q) --> (q --> p) ).
 t11 :- create_tt( (p+q) <-> (~ (p -->  q) v ~ (q --> p) )).
 
+
+%  vector(Fml) - evaluate all rows of Fml at once and write
+%    the number of rows that are true and the truth vector.
+
+vector(Fml) :-
+  tt_vector(Fml, Atoms, Vector),
+  length(Atoms, N),
+  Rows is 1 << N,
+  True is popcount(Vector),
+  format('~w: ~w of ~w rows true, vector ~2r~n', [Atoms, True, Rows, Vector]).
+
+%  pairs(N, Fml) - (a1 <-> b1) ^ ... ^ (aN <-> bN), with 2N atoms.
+
+pairs(N, Fml) :-
+  numlist(1, N, Is),
+  maplist(pair, Is, [P | Ps]),
+  foldl(conj, Ps, P, Fml).
+
+pair(I, A <-> B) :-
+  atom_concat(a, I, A),
+  atom_concat(b, I, B).
+
+conj(F, F0, F0 ^ F).
+
+t12 :- vector(p ^ (q v r)).
+t13 :- vector(p --> (q --> r) --> (p --> q) --> (p --> r)).
+t14 :- pairs(10, Fml), tt_vector(Fml, Atoms, Vector),
+       length(Atoms, N), True is popcount(Vector),
+       format('~w atoms: ~w rows true~n', [N, True]).
+
+%  compiled(Fml) - write the clause compiled for Fml;
+%    the name created by gensym is written as compiled_tt.
+
+compiled(Fml) :-
+  to_internal(Fml, IFml),
+  get_atoms(IFml, Atoms),
+  compile_tt(IFml, Atoms, Eval),
+  Head =.. [Eval, Values, TV],
+  clause(Head, Body),
+  portray_clause((compiled_tt(Values, TV) :- Body)),
+  free_tt(Eval).
+
+t15 :- compiled( (p v q) ^ ~ (p v q) --> (p v q) ).
+t16 :- create_tt( (p v q) ^ ~ (p v q) --> (p v q) ).
+
+t17 :- create_tt(p ^ (q v r), [order(gray)]).
+t18 :- create_tt(p --> (q --> r) --> (p --> q) --> (p --> r), [order(gray)]).
+t19 :- create_tt(p, [order(gray)]).
+
+%  valid(Fml, Options) - write if Fml is valid, or a falsifying row.
+
+valid(Fml, Options) :-
+  find_row(Fml, f, V, Options), !,
+  write('Not valid: '), write(V), nl.
+valid(_, _) :-
+  write('Valid'), nl.
+
+t20 :- create_tt(p ^ (q v r), [parallel(2)]).
+t21 :- create_tt(p --> (q --> r) --> (p --> q) --> (p --> r), [parallel(5)]).
+t22 :- valid(p --> (q --> r) --> (p --> q) --> (p --> r), [parallel(2)]).
+t23 :- valid((p v q) --> (p ^ q), [parallel(1)]).
+t24 :- pairs(7, Fml), valid(Fml, [parallel(3)]).
+
+%  classify(Fml) - write the class of Fml with the counts
+%    of the rows and a witness.
+
+classify(Fml) :-
+  tt_classify(Fml, Class, Witness),
+  tt_summary(Fml, Class1, Counts, Witness1),
+  write(Class), write(' '), write(Witness), nl,
+  write(Class1), write(' '), write(Counts), write(' '), write(Witness1), nl.
+
+t25 :- classify(p --> (q --> r) --> (p --> q) --> (p --> r)).
+t26 :- classify(p ^ (q v r)).
+t27 :- classify(~ p ^ (q v r)).
+t28 :- classify(p ^ ~ p).
+t29 :- pairs(10, Fml), classify(Fml).
+
+%  interleaved - two formulas compiled before either is evaluated
+%    keep their own clauses.
+
+interleaved :-
+  to_internal(p v q, Fml1),
+  to_internal(p ^ q, Fml2),
+  compile_tt(Fml1, [p,q], Eval1),
+  compile_tt(Fml2, [p,q], Eval2),
+  call(Eval1, [t,f], TV1),
+  call(Eval2, [t,f], TV2),
+  free_tt(Eval1),
+  free_tt(Eval2),
+  write(TV1), write(' '), write(TV2), nl.
+
+t30 :- interleaved.
+
+%  nand and nor in the bitwise evaluation.
+
+t31 :- vector(p nand q).
+t32 :- vector(p nor q).
+
+%  freed - free_tt leaves no predicate for the compiled formula.
+
+freed :-
+  to_internal(p v q, Fml),
+  compile_tt(Fml, [p,q], Eval),
+  free_tt(Eval),
+  ( current_predicate(Eval/2) -> write(left) ; write(freed) ), nl.
+
+t33 :- freed.
+
+%  Only the partition p = f has the row p = f, q = f; the partition
+%    p = t, searched first, fails.
+
+t34 :- valid(p v q, [parallel(1)]).
+t35 :- catch(create_tt(p ^ q, [order(gray), parallel(1)]),
+             error(domain_error(tt_options, _), _),
+             ( write('order(gray) with parallel'), nl )).
+
+%  classify(Fml, Options) - write the class of Fml and a witness.
+%  In t36 the row with f, and in t37 the row with t, is only in
+%    the partition p = f, which is searched after p = t.
+
+classify(Fml, Options) :-
+  tt_classify(Fml, Class, Witness, Options),
+  write(Class), write(' '), write(Witness), nl.
+
+t36 :- classify(p v q, [parallel(1)]).
+t37 :- classify(~ p ^ ~ q, [parallel(1)]).
+t38 :- classify(p --> (q --> r) --> (p --> q) --> (p --> r), [parallel(2)]).
@@ -8,7 +8,9 @@
 %       a valuation is a list of pairs (A,TV), where
 %        A is a propositional symbol and
 %        TV is the value assigned to it
-%    tt computes the truth value of a formula under a valuation
+%    compile_tt compiles the formula to a predicate Eval
+%       that computes its truth value from the values of the atoms;
+%       it is removed by free_tt when the table has been written
 %    write_tt_line print a line of the truth table
 %    
 %    failure is used to backtrack so that generate can
@@ -17,12 +19,55 @@
 create_tt(Fml) :-
   to_internal(Fml, IFml),
   get_atoms(IFml, Atoms),
+  setup_call_cleanup(
+    compile_tt(IFml, Atoms, Eval),
+    write_tt(IFml, Atoms, Eval),
+    free_tt(Eval)).
+
+write_tt(IFml, Atoms, Eval) :-
   write_tt_title(IFml, Atoms),
   generate(Atoms, V),
-  tt(IFml, V, TV),
+  values(V, Values),
+  call(Eval, Values, TV),
   write_tt_line(IFml, V, TV),
   fail.
-create_tt(_).
+write_tt(_, _, _).
+
+%  create_tt(Fml, Options) creates the truth table with Options:
+%    order(binary) - the order of generate (the default),
+%    order(gray)   - the order of the reflected Gray code
+%                    (see create_tt_gray),
+%    parallel(K)   - the order of generate, computed by several
+%                    threads (see create_tt_parallel).
+%  The rows of parallel(K) are in the order of generate, so it
+%    cannot be combined with order(gray): a domain_error is thrown.
+
+create_tt(_, Options) :-
+  member(parallel(_), Options),
+  member(order(gray), Options), !,
+  throw(error(domain_error(tt_options, Options), _)).
+create_tt(Fml, Options) :-
+  member(parallel(K), Options), !,
+  create_tt_parallel(Fml, K).
+create_tt(Fml, Options) :-
+  order_option(Options, Order),
+  create_tt1(Order, Fml).
+
+order_option(Options, Order) :-
+  member(order(Order), Options), !.
+order_option(_, binary).
+
+create_tt1(binary, Fml) :-
+  create_tt(Fml).
+create_tt1(gray, Fml) :-
+  create_tt_gray(Fml).
+
+%  values(V, Values) returns the list of the truth values
+%    in the valuation V
+
+values([(_,TV) | VTail], [TV | Tail]) :-
+  values(VTail, Tail).
+values([], []).
 
 %  get_atoms(Fml, Atoms) returns a sorted list of the Atoms in Fml
 
@@ -63,3 +108,415 @@ tt(A or  B, V, TV) :- tt(A, V, TVA), tt(B, V, TVB), opr(or,  TVA, TVB, TV).
 tt(A and B, V, TV) :- tt(A, V, TVA), tt(B, V, TVB), opr(and, TVA, TVB, TV).
 tt(neg A,   V, TV) :- tt(A, V, TVA), negate(TVA, TV).
 tt(A,       V, TV) :- member((A,TV), V).
+
+%  compile_tt(Fml, Atoms, Eval)
+%    asserts the clause Eval(Values, TV) :- Body,
+%      where Values is a list of variables for the values of Atoms
+%      and Body computes the truth value TV of Fml from them.
+%    Eval is a new name created by gensym for each call, so
+%      formulas compiled by interleaved or concurrent calls do not
+%      replace each other; the truth value is call(Eval, Values, TV).
+%  free_tt(Eval) removes the predicate Eval/2, not only its clause,
+%    so no empty procedure is left for each call of compile_tt.
+%    The body is a sequence of calls to opr and negate,
+%      one for each distinct subformula, so a subformula that
+%      occurs more than once is computed once; the atoms are
+%      arguments, so they are not looked up in a valuation.
+%
+%  compile(Fml, TV, Map0, Map, Goals0, Goals)
+%    TV is the variable for the value of Fml, and
+%    Goals0-Goals is the list of the calls that compute it.
+%    Map is an association list from the subformulas that have
+%      been compiled to their variables; it starts with the atoms.
+
+compile_tt(Fml, Atoms, Eval) :-
+  length(Atoms, N),
+  length(Values, N),
+  pairs_keys_values(Pairs, Atoms, Values),
+  list_to_assoc(Pairs, Map),
+  compile(Fml, TV, Map, _, Goals, []),
+  conjunction(Goals, Body),
+  gensym(compiled_tt_, Eval),
+  Head =.. [Eval, Values, TV],
+  assert((Head :- Body)).
+
+free_tt(Eval) :-
+  abolish(Eval/2).
+
+compile(Fml, TV, Map, Map, Goals, Goals) :-
+  get_assoc(Fml, Map, TV), !.
+compile(neg A, TV, Map0, Map, Goals0, Goals) :- !,
+  compile(A, TVA, Map0, Map1, Goals0, [negate(TVA, TV) | Goals]),
+  put_assoc(neg A, Map1, TV, Map).
+compile(Fml, TV, Map0, Map, Goals0, Goals) :-
+  Fml =.. [Opr, A, B],
+  compile(A, TVA, Map0, Map1, Goals0, Goals1),
+  compile(B, TVB, Map1, Map2, Goals1, [opr(Opr, TVA, TVB, TV) | Goals]),
+  put_assoc(Fml, Map2, TV, Map).
+
+%  conjunction(Goals, Body) - Body is the conjunction of Goals.
+
+conjunction([], true).
+conjunction([Goal], Goal) :- !.
+conjunction([Goal | Goals], (Goal, Body)) :-
+  conjunction(Goals, Body).
+
+%  tt_vector(Fml, Atoms, Vector)
+%    evaluates Fml under all valuations of its Atoms at once.
+%    Vector is an integer whose bit R is 1 if Fml is true in row R
+%      of the truth table, in the order of generate:
+%      row 0 assigns t to all the atoms.
+%    columns assigns to each atom a column: the integer whose bit R
+%      is its value in row R; bits evaluates the formula on the
+%      columns with bitwise operations on the 2^N bits, where
+%      N is the number of atoms and Mask has all 2^N bits set.
+
+tt_vector(Fml, Atoms, Vector) :-
+  to_internal(Fml, IFml),
+  get_atoms(IFml, Atoms),
+  length(Atoms, N),
+  Mask is (1 << (1 << N)) - 1,
+  columns(Atoms, N, Mask, Columns),
+  bits(IFml, Columns, Mask, Vector).
+
+%  columns(Atoms, N, Mask, Columns)
+%    Columns is a list of pairs (A,Column), like a valuation.
+%    The atom at position I (from 0) is t in row R
+%      if bit K = N-1-I of R is 0, so its column is blocks
+%      of 2^K ones and 2^K zeros: Block repeated every 2^(K+1) bits.
+%      Mask // Period has a single bit at the start of each period.
+
+columns([A | ATail], N, Mask, [(A,Column) | CTail]) :-
+  K is N - 1,
+  Half is 1 << K,
+  Block is (1 << Half) - 1,
+  Period is (1 << (2 * Half)) - 1,
+  Column is Block * (Mask // Period),
+  columns(ATail, K, Mask, CTail).
+columns([], _, _, []).
+
+%  bits(Fml, Columns, Mask, Vector)
+%    returns in Vector the truth values of the formula Fml
+%    in all rows; the operators are computed bitwise,
+%    one clause for each operator of opr.
+
+bits(A eqv  B, C, M, V) :- !, bits(A, C, M, VA), bits(B, C, M, VB), V is M xor (VA xor VB).
+bits(A xor  B, C, M, V) :- !, bits(A, C, M, VA), bits(B, C, M, VB), V is VA xor VB.
+bits(A imp  B, C, M, V) :- !, bits(A, C, M, VA), bits(B, C, M, VB), V is (M xor VA) \/ VB.
+bits(A or   B, C, M, V) :- !, bits(A, C, M, VA), bits(B, C, M, VB), V is VA \/ VB.
+bits(A and  B, C, M, V) :- !, bits(A, C, M, VA), bits(B, C, M, VB), V is VA /\ VB.
+bits(A nor  B, C, M, V) :- !, bits(A, C, M, VA), bits(B, C, M, VB), V is M xor (VA \/ VB).
+bits(A nand B, C, M, V) :- !, bits(A, C, M, VA), bits(B, C, M, VB), V is M xor (VA /\ VB).
+bits(neg A,    C, M, V) :- !, bits(A, C, M, VA), V is M xor VA.
+bits(A,        C, _, V) :- member((A,V), C).
+
+%  create_tt_gray(Fml) creates the truth table for the formula Fml
+%    in the order of the reflected Gray code: starting with all
+%    the atoms t, each row flips the value of one atom, the last
+%    atom in every second row, the one before it in every fourth
+%    row, and so on.
+%    The formula is a network of nodes numbered from 1: first the
+%      atoms and then the distinct subformulas, each after its
+%      subformulas (see network).
+%    Values is a term with the current value of each node.
+%    When an atom is flipped, only the nodes that depend on it
+%      are recomputed, in the order of their numbers.
+
+create_tt_gray(Fml) :-
+  to_internal(Fml, IFml),
+  get_atoms(IFml, Atoms),
+  write_tt_title(IFml, Atoms),
+  length(Atoms, N),
+  network(IFml, Atoms, Defs, Root, Deps),
+  functor(Defs, _, M),
+  functor(Values, values, M),
+  forall(between(1, N, I), nb_setarg(I, Values, t)),
+  First is N + 1,
+  subformula_nodes(First, M, Nodes),
+  recompute(Nodes, Defs, Values),
+  Rows is 1 << N,
+  gray(1, Rows, IFml, Atoms, Defs, Deps, Root, Values).
+
+%  subformula_nodes(First, M, Nodes)
+%    Nodes is First..M, empty if the formula is an atom (First > M).
+
+subformula_nodes(First, M, []) :-
+  First > M, !.
+subformula_nodes(First, M, Nodes) :-
+  numlist(First, M, Nodes).
+
+%  gray(K, Rows, Fml, Atoms, Defs, Deps, Root, Values)
+%    write row K-1 and compute row K by flipping the atom
+%    that corresponds to the least significant bit of K.
+
+gray(K, Rows, Fml, Atoms, _, _, Root, Values) :-
+  K =:= Rows, !,
+  write_gray_line(Fml, Atoms, Root, Values).
+gray(K, Rows, Fml, Atoms, Defs, Deps, Root, Values) :-
+  write_gray_line(Fml, Atoms, Root, Values),
+  length(Atoms, N),
+  I is N - lsb(K),
+  arg(I, Values, TV),
+  negate(TV, TV1),
+  nb_setarg(I, Values, TV1),
+  arg(I, Deps, Nodes),
+  recompute(Nodes, Defs, Values),
+  K1 is K + 1,
+  gray(K1, Rows, Fml, Atoms, Defs, Deps, Root, Values).
+
+write_gray_line(Fml, Atoms, Root, Values) :-
+  findall((A,TV), (nth1(I, Atoms, A), arg(I, Values, TV)), V),
+  arg(Root, Values, TV),
+  write_tt_line(Fml, V, TV).
+
+%  recompute(Nodes, Defs, Values)
+%    compute the values of the nodes in the list Nodes
+%    from the definitions in Defs.
+
+recompute([I | Is], Defs, Values) :-
+  arg(I, Defs, Def),
+  node_value(Def, Values, TV),
+  nb_setarg(I, Values, TV),
+  recompute(Is, Defs, Values).
+recompute([], _, _).
+
+node_value(neg(A), Values, TV) :-
+  arg(A, Values, TVA),
+  negate(TVA, TV).
+node_value(opr(Opr, A, B), Values, TV) :-
+  arg(A, Values, TVA),
+  arg(B, Values, TVB),
+  opr(Opr, TVA, TVB, TV).
+
+%  network(Fml, Atoms, Defs, Root, Deps)
+%    Defs is a term whose argument I is the definition of node I:
+%      atom for an atom, neg(A) or opr(Opr, A, B) for a subformula,
+%      where A and B are the numbers of the subformulas.
+%    Root is the number of Fml.
+%    Deps is a term whose argument I is the list of the
+%      subformulas that contain atom I, in ascending order.
+%
+%  net(Fml, I, State0, State)
+%    I is the number of Fml. The state s(Map, Next, Defs) contains
+%      an association list from the subformulas to their numbers,
+%      the next number, and the definitions in reverse order.
+
+network(Fml, Atoms, Defs, Root, Deps) :-
+  length(Atoms, N),
+  numlist(1, N, Is),
+  pairs_keys_values(Pairs, Atoms, Is),
+  list_to_assoc(Pairs, Map),
+  First is N + 1,
+  net(Fml, Root, s(Map, First, []), s(_, _, Reversed)),
+  reverse(Reversed, Subs),
+  findall(atom, member(_, Atoms), AtomDefs),
+  append(AtomDefs, Subs, DefList),
+  Defs =.. [defs | DefList],
+  supports(DefList, 1, [], Supports),
+  findall(Nodes,
+    ( member(I, Is),
+      findall(J, (member(J-S, Supports), J > N, memberchk(I, S)), Nodes) ),
+    DepList),
+  Deps =.. [deps | DepList].
+
+net(Fml, I, State, State) :-
+  State = s(Map, _, _),
+  get_assoc(Fml, Map, I), !.
+net(neg A, I, State0, State) :- !,
+  net(A, IA, State0, State1),
+  new_node(neg A, neg(IA), I, State1, State).
+net(Fml, I, State0, State) :-
+  Fml =.. [Opr, A, B],
+  net(A, IA, State0, State1),
+  net(B, IB, State1, State2),
+  new_node(Fml, opr(Opr, IA, IB), I, State2, State).
+
+new_node(Fml, Def, I, s(Map0, I, Defs), s(Map, Next, [Def | Defs])) :-
+  put_assoc(Fml, Map0, I, Map),
+  Next is I + 1.
+
+%  supports(Defs, I, Supports0, Supports)
+%    Supports is a list of pairs J-S for the subformulas,
+%    where S is the set of the atoms in subformula J.
+%    Supports0 is in reverse order, so the nodes are looked up
+%    in the pairs computed so far.
+
+supports([], _, Supports0, Supports) :-
+  reverse(Supports0, Supports).
+supports([Def | Defs], I, Supports0, Supports) :-
+  support(Def, I, Supports0, S),
+  I1 is I + 1,
+  supports(Defs, I1, [I-S | Supports0], Supports).
+
+support(atom, I, _, [I]).
+support(neg(A), _, Supports, S) :-
+  memberchk(A-S, Supports).
+support(opr(_, A, B), _, Supports, S) :-
+  memberchk(A-SA, Supports),
+  memberchk(B-SB, Supports),
+  ord_union(SA, SB, S).
+
+%  create_tt_parallel(Fml, K) creates the truth table for Fml
+%    by splitting the valuations into 2^K partitions:
+%    partitions generates the valuations of the first K atoms,
+%    and each partition is the list of the rows that extend one of
+%    them by a valuation of the other atoms.
+%    The partitions are computed concurrently by a thread for each
+%    CPU and then printed in order, so the table is the same as
+%    that of create_tt.
+%
+%  find_row(Fml, TV, V, Options) finds a valuation V in which Fml
+%    has the truth value TV, and fails if there is none.
+%    With the option parallel(K), the partitions are searched
+%    concurrently and the search stops when a row is found
+%    in any partition; V is the first row found, which need not
+%    be the first in the order of generate. A partition without
+%    such a row fails without stopping the others (on_fail(continue)),
+%    so find_row fails only if no partition has the row.
+%    Fml is valid if there is no row with f, and
+%    satisfiable if there is a row with t.
+
+create_tt_parallel(Fml, K) :-
+  to_internal(Fml, IFml),
+  get_atoms(IFml, Atoms),
+  setup_call_cleanup(
+    compile_tt(IFml, Atoms, Eval),
+    write_tt_parallel(IFml, Atoms, Eval, K),
+    free_tt(Eval)).
+
+write_tt_parallel(IFml, Atoms, Eval, K) :-
+  partitions(Atoms, K, Prefixes, Rest),
+  findall(partition_rows(Eval, P, Rest, Rows), member(P, Prefixes), Goals),
+  threads(Threads),
+  concurrent(Threads, Goals, []),
+  write_tt_title(IFml, Atoms),
+  forall(member(partition_rows(_, _, _, Rows), Goals),
+         forall(member(V-TV, Rows), write_tt_line(IFml, V, TV))).
+
+find_row(Fml, TV, V, Options) :-
+  to_internal(Fml, IFml),
+  get_atoms(IFml, Atoms),
+  setup_call_cleanup(
+    compile_tt(IFml, Atoms, Eval),
+    find_row1(Eval, Atoms, TV, V, Options),
+    free_tt(Eval)).
+
+find_row1(Eval, Atoms, TV, V, Options) :-
+  member(parallel(K), Options), !,
+  partitions(Atoms, K, Prefixes, Rest),
+  maplist(row_goal(Eval, Rest, TV, V), Prefixes, Goals),
+  first_solution(V, Goals, [on_fail(continue)]).
+find_row1(Eval, Atoms, TV, V, _) :-
+  partition_row(Eval, [], Atoms, TV, V).
+
+%  partitions(Atoms, K, Prefixes, Rest)
+%    Prefixes are the valuations of the first K atoms
+%    (all of them if there are fewer) and Rest are the other atoms.
+
+partitions(Atoms, K, Prefixes, Rest) :-
+  length(Atoms, N),
+  K1 is min(K, N),
+  length(First, K1),
+  append(First, Rest, Atoms),
+  findall(P, generate(First, P), Prefixes).
+
+%  partition_rows(Eval, P, Rest, Rows)
+%    Rows is the list of V-TV for the valuations V that extend P;
+%    Eval is the compiled formula.
+%  partition_row(Eval, P, Rest, TV, V)
+%    V is the first valuation that extends P in which
+%    the value is TV.
+%  row_goal(Eval, Rest, TV, V, P, Goal)
+%    the goals of first_solution share the variable V.
+
+partition_rows(Eval, P, Rest, Rows) :-
+  findall(V-TV, partition_row1(Eval, P, Rest, V, TV), Rows).
+
+partition_row(Eval, P, Rest, TV, V) :-
+  partition_row1(Eval, P, Rest, V, TV), !.
+
+row_goal(Eval, Rest, TV, V, P, partition_row(Eval, P, Rest, TV, V)).
+
+partition_row1(Eval, P, Rest, V, TV) :-
+  generate(Rest, VRest),
+  append(P, VRest, V),
+  values(V, Values),
+  call(Eval, Values, TV).
+
+threads(Threads) :-
+  current_prolog_flag(cpu_count, Threads).
+
+%  Queries that return the classification of a formula without
+%    printing the truth table.
+%    Class is valid (true in all rows), satisfiable (true in some
+%    but not all rows) or unsatisfiable (true in no row).
+%    Witness is a valuation in which the formula is true,
+%    or none if it is unsatisfiable.
+%
+%  tt_classify(Fml, Class, Witness)
+%  tt_classify(Fml, Class, Witness, Options)
+%    stops as soon as the class is known: the value in the first
+%    row is computed and then find_row searches for a row with
+%    the other value. Options are those of find_row.
+%  tt_summary(Fml, Class, counts(True, False), Witness)
+%    also returns the number of rows in which Fml is True and
+%    False; all the rows are computed at once by tt_vector and
+%    the witness is the first row that is true.
+
+tt_classify(Fml, Class, Witness) :-
+  tt_classify(Fml, Class, Witness, []).
+
+tt_classify(Fml, Class, Witness, Options) :-
+  to_internal(Fml, IFml),
+  get_atoms(IFml, Atoms),
+  setup_call_cleanup(
+    compile_tt(IFml, Atoms, Eval),
+    classify_rows(Eval, Atoms, Options, TV, V, Found),
+    free_tt(Eval)),
+  classify(TV, Found, V, Class, Witness).
+
+%  classify_rows(Eval, Atoms, Options, TV, V, Found)
+%    TV is the value in the first row V; Found is as in classify.
+
+classify_rows(Eval, Atoms, Options, TV, V, Found) :-
+  partition_row1(Eval, [], Atoms, V, TV), !,
+  negate(TV, Other),
+  ( find_row1(Eval, Atoms, Other, V1, Options) -> Found = yes(V1) ; Found = no ).
+
+%  classify(TV, Found, V, Class, Witness)
+%    TV is the value in the first row V, and Found is yes(V1) if
+%    the row V1 has the other value, otherwise no.
+
+classify(t, no,      V, valid,         V).
+classify(t, yes(_),  V, satisfiable,   V).
+classify(f, yes(V1), _, satisfiable,   V1).
+classify(f, no,      _, unsatisfiable, none).
+
+tt_summary(Fml, Class, counts(True, False), Witness) :-
+  tt_vector(Fml, Atoms, Vector),
+  length(Atoms, N),
+  Rows is 1 << N,
+  True is popcount(Vector),
+  False is Rows - True,
+  summary_class(True, False, Class),
+  witness(Vector, Atoms, N, Witness).
+
+summary_class(_, 0, valid) :- !.
+summary_class(0, _, unsatisfiable) :- !.
+summary_class(_, _, satisfiable).
+
+%  witness(Vector, Atoms, N, Witness)
+%    Witness is the valuation of the first row R that is true:
+%    the atom at position I (from 0) is t if bit N-1-I of R is 0.
+
+witness(0, _, _, none) :- !.
+witness(Vector, Atoms, N, Witness) :-
+  R is lsb(Vector),
+  findall((A,TV),
+    ( nth0(I, Atoms, A),
+      Bit is (R >> (N - 1 - I)) /\ 1,
+      bit_value(Bit, TV) ),
+    Witness).
+
+bit_value(0, t).
+bit_value(1, f).
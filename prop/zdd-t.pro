@@ -0,0 +1,70 @@
+% Copyright 2000-2012 by M. Ben-Ari. GNU GPL. See prolog.pdf.
+
+%  Test program for ZDDs.
+
+user:file_search_path(common,'../common').
+  :- ensure_loaded(common(ops)).
+  :- ensure_loaded(common(intext)).
+  :- ensure_loaded(common(io)).
+  :- ensure_loaded(cnfprop).
+  :- ensure_loaded(bdd).
+  :- ensure_loaded(zdd).
+
+%  family(Sets, Z) - Z is the ZDD of the list of sets Sets.
+
+family(Sets, Z) :-
+  maplist(zdd_set, Sets, Zs),
+  foldl(union, Zs, 0, Z).
+
+union(Z1, Z2, Z) :-
+  zdd_union(Z2, Z1, Z).
+
+write_family(Name, Z) :-
+  zdd_sets(Z, Sets),
+  zdd_count(Z, Count),
+  zdd_size(Z, Size),
+  write(Name), write(' '), write(Sets),
+  write(' ('), write(Count), write(' sets, '),
+  write(Size), write(' nodes)'), nl.
+
+%  operations - the operations on two families.
+
+operations :-
+  family([[1,2], [2,3], [3]], P),
+  family([[2,3], [1], [3]], Q),
+  write_family('P', P),
+  write_family('Q', Q),
+  zdd_union(P, Q, U),               write_family('Union', U),
+  zdd_intersection(P, Q, I),        write_family('Intersection', I),
+  zdd_difference(P, Q, D),          write_family('Difference', D),
+  zdd_product(P, Q, R),             write_family('Product', R),
+  zdd_nonsup(P, Q, N),              write_family('Nonsup', N),
+  zdd_minimal(U, M),                write_family('Minimal', M).
+
+%  test(Fml) - convert the CNF of Fml to clausal notation and to
+%    a ZDD, and remove the subsumed clauses.
+
+test(Fml) :-
+  clear_zdd,
+  write_formula(Fml), nl,
+  to_internal(Fml, IFml),
+  cnf(IFml, CNF),
+  cnf_to_clausal(CNF, Clauses),
+  write_clauses(Clauses), nl,
+  clausal_zdd(Clauses, Z),
+  zdd_count(Z, Count),
+  write(Count), write(' clauses'), nl,
+  zdd_minimal(Z, M),
+  zdd_clausal(M, Minimal),
+  write('Subsumption-free '), write_clauses(Minimal), nl.
+
+t1 :- operations.
+t2 :- test( (p v q) ^ (p v q v r) ^ (~p v r) ^ (~p v r v ~q) ).
+t3 :- test( (p --> q) ^ (q --> r) ^ (p v (q ^ r)) ).
+t4 :- test( ~ ((p v q) <-> (q v p)) ).
+
+%  The clause p v ~p v q is valid and is dropped.
+
+t5 :- test( (p v ~p v q) ^ (q v r) ^ (q v r v s) ).
+
+tall :- t1, t2, t3, t4, t5.
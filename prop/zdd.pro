@@ -0,0 +1,381 @@
+% Copyright 2000-2012 by M. Ben-Ari. GNU GPL. See prolog.pdf.
+
+%  Implementation of zero-suppressed decision diagrams (ZDD)
+
+:- module(zdd,
+     [zdd_set/2,
+      zdd_union/3,
+      zdd_intersection/3,
+      zdd_difference/3,
+      zdd_product/3,
+      zdd_nonsup/3,
+      zdd_minimal/2,
+      zdd_count/2,
+      zdd_size/2,
+      zdd_sets/2,
+      clausal_zdd/2,
+      zdd_clausal/2,
+      lit_var/2,
+      clear_zdd/0]).
+
+:- use_module(bdd, [cached/2, cache/2]).
+
+%  A ZDD represents a family of sets of variables (integers).
+%  A ZDD is the ID of its root node; 0 is the empty family
+%    and 1 is the family whose only member is the empty set.
+%  zdd(Z, N, Low, High)
+%    - node Z for variable N: the family Low of the sets without N
+%      and the sets of the family High, each with N added.
+%      A node whose High is 0 is never created (zero suppression),
+%      so a variable that appears in no set has no node and
+%      sparse families have few nodes.
+%  Variables are ordered by their numbers, smaller at the root.
+%  The nodes are kept in a unique table as in bdd, but the IDs start
+%    at 2 and there are no complement edges. Results are cached in
+%    the computed table of bdd with keys zdd_union(P, Q), etc.;
+%    clear_zdd does not reuse IDs, so these entries remain valid.
+%
+%  lit_var(L, N) - literal L is variable N: the K'th atom A is 2*K
+%    and neg A is 2*K+1, so a clause is a set of variables.
+
+:- dynamic zdd/4, lit_var/2.
+
+%  clear_zdd - remove all nodes and literals.
+%    ZDDs created before the call are no longer valid.
+
+clear_zdd :-
+  retractall(zdd(_,_,_,_)),
+  retractall(lit_var(_,_)),
+  flag(zdd_atoms, _, 0).
+
+%  make_zdd(N, Low, High, Z) - Z is the node for N, Low, High.
+%    (1) if High is 0, the node is Low,
+%    (2) if the node is in the unique table, return it,
+%    (3) otherwise, assert a node with a new ID.
+
+make_zdd(_, Low, 0, Low) :- !.
+make_zdd(N, Low, High, Z) :-
+  zdd(Z, N, Low, High), !.
+make_zdd(N, Low, High, Z) :-
+  flag(zdd_id, ID, ID+1),
+  Z is ID + 2,
+  assert(zdd(Z, N, Low, High)).
+
+%  top_var(P, Q, Order, N) - compare the variables at the roots of
+%    P and Q: Order is <, = or > and N is the smaller variable.
+%    The leaves are below every variable.
+
+top_var(P, Q, Order, N) :-
+  root(P, NP),
+  root(Q, NQ),
+  compare(Order, NP, NQ),
+  N = NP.
+
+root(Z, N) :- zdd(Z, N, _, _), !.
+root(_, leaf).
+
+%  subsets(Z, N, Low, High) - the sets of Z without and with N.
+
+subsets(Z, N, Low, High) :-
+  zdd(Z, N, Low, High), !.
+subsets(Z, _, Z, 0).
+
+%  zdd_set(Vars, Z) - Z is the family whose only member is
+%    the set of the variables in the list Vars.
+
+zdd_set(Vars, Z) :-
+  sort(Vars, Sorted),
+  reverse(Sorted, Reversed),
+  foldl(add_var, Reversed, 1, Z).
+
+add_var(N, High, Z) :-
+  make_zdd(N, 0, High, Z).
+
+%  zdd_union(P, Q, R)        - R = P union Q.
+%  zdd_intersection(P, Q, R) - R = P intersection Q.
+%  zdd_difference(P, Q, R)   - R = P - Q.
+%    Each checks the terminal cases and the computed table, then
+%    recurses on the cofactors for the smaller root variable:
+%    a variable at the root of only one operand appears in
+%    none of the sets of the other.
+%    Union and intersection are commutative, so the key is ordered.
+
+zdd_union(0, Q, Q) :- !.
+zdd_union(P, 0, P) :- !.
+zdd_union(P, P, P) :- !.
+zdd_union(P, Q, R) :-
+  P > Q, !,
+  zdd_union(Q, P, R).
+zdd_union(P, Q, R) :-
+  cached(zdd_union(P, Q), R), !.
+zdd_union(P, Q, R) :-
+  top_var(P, Q, Order, N),
+  union(Order, N, P, Q, R),
+  cache(zdd_union(P, Q), R).
+
+union(<, N, P, Q, R) :-
+  zdd(P, N, PLow, PHigh),
+  zdd_union(PLow, Q, Low),
+  make_zdd(N, Low, PHigh, R).
+union(>, _, P, Q, R) :-
+  zdd(Q, N, QLow, QHigh),
+  zdd_union(P, QLow, Low),
+  make_zdd(N, Low, QHigh, R).
+union(=, N, P, Q, R) :-
+  zdd(P, N, PLow, PHigh),
+  zdd(Q, N, QLow, QHigh),
+  zdd_union(PLow,  QLow,  Low),
+  zdd_union(PHigh, QHigh, High),
+  make_zdd(N, Low, High, R).
+
+zdd_intersection(0, _, 0) :- !.
+zdd_intersection(_, 0, 0) :- !.
+zdd_intersection(P, P, P) :- !.
+zdd_intersection(P, Q, R) :-
+  P > Q, !,
+  zdd_intersection(Q, P, R).
+zdd_intersection(P, Q, R) :-
+  cached(zdd_intersection(P, Q), R), !.
+zdd_intersection(P, Q, R) :-
+  top_var(P, Q, Order, N),
+  intersection(Order, N, P, Q, R),
+  cache(zdd_intersection(P, Q), R).
+
+intersection(<, N, P, Q, R) :-
+  zdd(P, N, PLow, _),
+  zdd_intersection(PLow, Q, R).
+intersection(>, _, P, Q, R) :-
+  zdd(Q, _, QLow, _),
+  zdd_intersection(P, QLow, R).
+intersection(=, N, P, Q, R) :-
+  zdd(P, N, PLow, PHigh),
+  zdd(Q, N, QLow, QHigh),
+  zdd_intersection(PLow,  QLow,  Low),
+  zdd_intersection(PHigh, QHigh, High),
+  make_zdd(N, Low, High, R).
+
+zdd_difference(0, _, 0) :- !.
+zdd_difference(P, 0, P) :- !.
+zdd_difference(P, P, 0) :- !.
+zdd_difference(P, Q, R) :-
+  cached(zdd_difference(P, Q), R), !.
+zdd_difference(P, Q, R) :-
+  top_var(P, Q, Order, N),
+  difference(Order, N, P, Q, R),
+  cache(zdd_difference(P, Q), R).
+
+difference(<, N, P, Q, R) :-
+  zdd(P, N, PLow, PHigh),
+  zdd_difference(PLow, Q, Low),
+  make_zdd(N, Low, PHigh, R).
+difference(>, _, P, Q, R) :-
+  zdd(Q, _, QLow, _),
+  zdd_difference(P, QLow, R).
+difference(=, N, P, Q, R) :-
+  zdd(P, N, PLow, PHigh),
+  zdd(Q, N, QLow, QHigh),
+  zdd_difference(PLow,  QLow,  Low),
+  zdd_difference(PHigh, QHigh, High),
+  make_zdd(N, Low, High, R).
+
+%  zdd_product(P, Q, R) - R is the family of the unions of a set
+%    of P and a set of Q (the unate product).
+%    For the variable N at the root of P:
+%      P = PLow + N*PHigh, Q = QLow + N*QHigh, so
+%      P*Q = PLow*QLow + N*(PHigh*QHigh + PHigh*QLow + PLow*QHigh)
+%    where QHigh is 0 if N is not at the root of Q.
+
+zdd_product(0, _, 0) :- !.
+zdd_product(_, 0, 0) :- !.
+zdd_product(1, Q, Q) :- !.
+zdd_product(P, 1, P) :- !.
+zdd_product(P, Q, R) :-
+  P > Q, !,
+  zdd_product(Q, P, R).
+zdd_product(P, Q, R) :-
+  cached(zdd_product(P, Q), R), !.
+zdd_product(P, Q, R) :-
+  top_var(P, Q, Order, _),
+  product(Order, P, Q, R),
+  cache(zdd_product(P, Q), R).
+
+product(>, P, Q, R) :- !,
+  product(<, Q, P, R).
+product(_, P, Q, R) :-
+  zdd(P, N, PLow, PHigh),
+  subsets(Q, N, QLow, QHigh),
+  zdd_product(PLow,  QLow,  Low),
+  zdd_product(PHigh, QHigh, High1),
+  zdd_product(PHigh, QLow,  High2),
+  zdd_product(PLow,  QHigh, High3),
+  zdd_union(High1, High2, High12),
+  zdd_union(High12, High3, High),
+  make_zdd(N, Low, High, R).
+
+%  zdd_nonsup(P, Q, R) - R is the family of the sets of P that are
+%    not supersets of any set of Q.
+%    Every set is a superset of the empty set, the set of 1.
+%    For the variable N at the roots:
+%      - at the root of P only: the sets of Q do not contain N,
+%      - at the root of Q only: the sets of Q with N are not
+%          subsets of any set of P,
+%      - at both roots: a set of PHigh with N added is a superset
+%          of a set of QLow or of a set of QHigh with N added.
+
+zdd_nonsup(0, _, 0) :- !.
+zdd_nonsup(P, 0, P) :- !.
+zdd_nonsup(_, 1, 0) :- !.
+zdd_nonsup(P, P, 0) :- !.
+zdd_nonsup(P, Q, R) :-
+  cached(zdd_nonsup(P, Q), R), !.
+zdd_nonsup(P, Q, R) :-
+  top_var(P, Q, Order, N),
+  nonsup(Order, N, P, Q, R),
+  cache(zdd_nonsup(P, Q), R).
+
+nonsup(<, N, P, Q, R) :-
+  zdd(P, N, PLow, PHigh),
+  zdd_nonsup(PLow,  Q, Low),
+  zdd_nonsup(PHigh, Q, High),
+  make_zdd(N, Low, High, R).
+nonsup(>, _, P, Q, R) :-
+  zdd(Q, _, QLow, _),
+  zdd_nonsup(P, QLow, R).
+nonsup(=, N, P, Q, R) :-
+  zdd(P, N, PLow, PHigh),
+  zdd(Q, N, QLow, QHigh),
+  zdd_nonsup(PLow,  QLow,  Low),
+  zdd_nonsup(PHigh, QLow,  High1),
+  zdd_nonsup(High1, QHigh, High),
+  make_zdd(N, Low, High, R).
+
+%  zdd_minimal(P, R) - R is the family of the sets of P that
+%    do not contain another set of P, so a clause set is made
+%    subsumption-free: the sets with N are removed if they are
+%    supersets of the minimal sets without N.
+
+zdd_minimal(P, P) :-
+  P =< 1, !.
+zdd_minimal(P, R) :-
+  cached(zdd_minimal(P), R), !.
+zdd_minimal(P, R) :-
+  zdd(P, N, PLow, PHigh),
+  zdd_minimal(PLow,  Low),
+  zdd_minimal(PHigh, High1),
+  zdd_nonsup(High1, Low, High),
+  make_zdd(N, Low, High, R),
+  cache(zdd_minimal(P), R).
+
+%  zdd_count(Z, Count) - Count is the number of sets in Z.
+%  zdd_size(Z, Size)   - Size is the number of nodes of Z,
+%    including the leaves.
+%  Both visit each node once, using an association list.
+
+zdd_count(Z, Count) :-
+  empty_assoc(Empty),
+  count_sets(Z, Count, Empty, _).
+
+count_sets(Z, Z, Counts, Counts) :-
+  Z =< 1, !.
+count_sets(Z, Count, Counts, Counts) :-
+  get_assoc(Z, Counts, Count), !.
+count_sets(Z, Count, Counts0, Counts) :-
+  zdd(Z, _, Low, High),
+  count_sets(Low,  CountLow,  Counts0, Counts1),
+  count_sets(High, CountHigh, Counts1, Counts2),
+  Count is CountLow + CountHigh,
+  put_assoc(Z, Counts2, Count, Counts).
+
+zdd_size(Z, Size) :-
+  empty_assoc(Empty),
+  mark(Z, Empty, Visited),
+  assoc_to_keys(Visited, Nodes),
+  length(Nodes, Size).
+
+mark(Z, Visited, Visited) :-
+  get_assoc(Z, Visited, _), !.
+mark(Z, Visited, Visited1) :-
+  put_assoc(Z, Visited, x, Visited2),
+  mark1(Z, Visited2, Visited1).
+
+mark1(Z, Visited, Visited1) :-
+  zdd(Z, _, Low, High), !,
+  mark(Low,  Visited,  Visited2),
+  mark(High, Visited2, Visited1).
+mark1(_, Visited, Visited).
+
+%  zdd_sets(Z, Sets) - Sets is the list of the sets of Z,
+%    each a sorted list of variables.
+%  set(Z, Set) - on backtracking, Set is a set of Z.
+
+zdd_sets(Z, Sets) :-
+  findall(Set, set(Z, Set), Sets).
+
+set(1, []).
+set(Z, Set) :-
+  zdd(Z, N, Low, High),
+  ( set(Low, Set)
+  ; set(High, Set1), Set = [N | Set1]
+  ).
+
+
+%  clausal_zdd(Clauses, Z) - Z is the ZDD of the set of clauses
+%    Clauses in clausal notation (a list of lists of literals,
+%    as returned by cnf_to_clausal), using lit_var to number
+%    the literals. The union of the clauses is computed by
+%    halves, so the operands of each union have similar sizes.
+%    cnf_to_clausal returns [] for a clause with clashing literals;
+%    such a clause is valid and adds no constraint, so it is
+%    dropped (it is not the empty clause, which is unsatisfiable).
+%  zdd_clausal(Z, Clauses) - Clauses are the sets of Z as lists
+%    of literals.
+
+clausal_zdd(Clauses0, Z) :-
+  exclude(==([]), Clauses0, Clauses),
+  maplist(clause_zdd, Clauses, Zs),
+  union_list(Zs, Z).
+
+clause_zdd(Clause, Z) :-
+  maplist(literal_var, Clause, Vars),
+  zdd_set(Vars, Z).
+
+union_list([], 0).
+union_list([Z], Z) :- !.
+union_list(Zs, Z) :-
+  length(Zs, Length),
+  Half is Length // 2,
+  length(Zs1, Half),
+  append(Zs1, Zs2, Zs),
+  union_list(Zs1, Z1),
+  union_list(Zs2, Z2),
+  zdd_union(Z1, Z2, Z).
+
+zdd_clausal(Z, Clauses) :-
+  zdd_sets(Z, Sets),
+  maplist(maplist(var_literal), Sets, Clauses).
+
+literal_var(L, N) :-
+  lit_var(L, N), !.
+literal_var(neg A, N) :- !,
+  atom_index(A, K),
+  N is 2*K + 1.
+literal_var(A, N) :-
+  atom_index(A, K),
+  N is 2*K.
+
+var_literal(N, L) :-
+  lit_var(L, N).
+
+%  atom_index(A, K) - A is the K'th atom; a new atom gets the next
+%    number and variables for both of its literals.
+
+atom_index(A, K) :-
+  lit_var(A, N), !,
+  K is N // 2.
+atom_index(A, K) :-
+  flag(zdd_atoms, K0, K0+1),
+  K is K0 + 1,
+  Pos is 2*K,
+  Neg is 2*K + 1,
+  assert(lit_var(A, Pos)),
+  assert(lit_var(neg A, Neg)).
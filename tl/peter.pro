@@ -0,0 +1,41 @@
+% Copyright 2000-2012 by M. Ben-Ari. GNU GPL. See prolog.pdf.
+
+%  State diagram for Peterson's algorithm
+
+%  Each process has four locations, encoded by two bits:
+%      1  non-critical section: want := true
+%      2  last := this process
+%      3  await (other process does not want) or (last is the other)
+%      4  critical section: want := false
+%  The bits of process p are p1 (high) and p2 (low); last is true
+%    if p was the last to set it.
+%
+%  peterson(Model) - the model for sym:build_model.
+%  peterson(Model, N) - N is 1 or 2: the model without the test of
+%    last or without the test of want in the await statement.
+
+peterson(Model) :-
+  peterson(Model, 0).
+
+peterson(model(
+    [p1, p2, wantp, q1, q2, wantq, last],
+    [ at_p1 = neg p1 and neg p2, at_p2 = neg p1 and p2,
+      at_p3 = p1 and neg p2,     at_p4 = p1 and p2,
+      at_q1 = neg q1 and neg q2, at_q2 = neg q1 and q2,
+      at_q3 = q1 and neg q2,     at_q4 = q1 and q2,
+      cs_p = at_p4, cs_q = at_q4,
+      try_p = at_p2 or at_p3, try_q = at_q2 or at_q3 ],
+    at_p1 and at_q1 and neg wantp and neg wantq,
+    [ t(p1, at_p1, [wantp = true,  p1 = false, p2 = true]),
+      t(p2, at_p2, [last = true,   p1 = true,  p2 = false]),
+      t(p3, at_p3 and AwaitP,     [p1 = true,  p2 = true]),
+      t(p4, at_p4, [wantp = false, p1 = false, p2 = false]),
+      t(q1, at_q1, [wantq = true,  q1 = false, q2 = true]),
+      t(q2, at_q2, [last = false,  q1 = true,  q2 = false]),
+      t(q3, at_q3 and AwaitQ,     [q1 = true,  q2 = true]),
+      t(q4, at_q4, [wantq = false, q1 = false, q2 = false]) ]), N) :-
+  await(N, AwaitP, AwaitQ).
+
+await(0, neg wantq or neg last, neg wantp or last).
+await(1, neg wantq,             neg wantp).
+await(2, neg last,              last).
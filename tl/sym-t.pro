@@ -0,0 +1,86 @@
+% Copyright 2000-2012 by M. Ben-Ari. GNU GPL. See prolog.pdf.
+
+%  Test programs for symbolic model checking.
+
+user:file_search_path(common,'../common').
+:- ensure_loaded(common(ops)).
+:- ensure_loaded(sym).
+:- ensure_loaded(peter).
+
+%  ctl(Fml), ltl(Fml) - check a CTL or LTL formula.
+
+ctl(Fml) :-
+  write('CTL '), write(Fml),
+  (check_ctl(Fml) -> write(' holds') ; write(' does not hold')), nl.
+
+ltl(Fml) :-
+  write('LTL '), write(Fml),
+  (check_ltl(Fml) -> write(' holds') ; write(' does not hold')), nl.
+
+%  test(N) - build the model of Peterson's algorithm (see peter.pro)
+%    and check mutual exclusion, deadlock freedom and liveness.
+
+test(N) :-
+  peterson(Model, N),
+  write('Peterson '), write(N), nl,
+  build_model(Model),
+  reachable_count(Count),
+  write(Count), write(' reachable states'), nl,
+  ctl(ag(neg (cs_p and cs_q))),
+  ctl(ag(ef(cs_p))),
+  ctl(ag(try_p imp af(cs_p))),
+  ltl(always neg (cs_p and cs_q)),
+  ltl(always (try_p imp eventually cs_p)),
+  ltl(always eventually cs_q),
+  ltl(next next wantp or next next wantq).
+
+%  ring(N, Model) - a token ring of N processes: process I can
+%    enter its critical section (cI) when it holds the token (tI),
+%    and passes the token to the next process when it leaves.
+
+ring(N, model(Vars, [], Init, Transitions)) :-
+  numlist(1, N, Is),
+  findall(V, (member(I, Is), ring_var(I, V)), Vars),
+  findall(neg T, (member(I, Is), I > 1, atom_concat(t, I, T)), NoToken),
+  findall(neg C, (member(I, Is), atom_concat(c, I, C)), NoCritical),
+  append(NoToken, NoCritical, Fmls),
+  foldl(and_fml, Fmls, t1, Init),
+  findall(T, (member(I, Is), ring_trans(N, I, T)), Transitions).
+
+ring_var(I, T) :- atom_concat(t, I, T).
+ring_var(I, C) :- atom_concat(c, I, C).
+
+ring_trans(_, I, t(enter, T and neg C, [C = true])) :-
+  atom_concat(t, I, T),
+  atom_concat(c, I, C).
+ring_trans(N, I, t(leave, C, [C = false, T = false, T1 = true])) :-
+  atom_concat(t, I, T),
+  atom_concat(c, I, C),
+  J is I mod N + 1,
+  atom_concat(t, J, T1).
+
+and_fml(Fml, Fml0, Fml0 and Fml).
+
+%  compare(Name, Model) - compute the reachable states with a
+%    monolithic and a partitioned transition relation: the nodes
+%    of the relation, the largest BDD of the relation and the nodes
+%    created during the computation.
+
+compare(Name, Model) :-
+  write(Name), nl,
+  forall(member(Relation, [monolithic, partitioned]),
+    ( build_model(Model, [relation(Relation)]),
+      relation_size(Size, Largest),
+      reachable_count(Count),
+      node_count(Nodes),
+      format('~w: ~w nodes, largest ~w, ~w reachable states, ~w nodes created~n',
+        [Relation, Size, Largest, Count, Nodes]) )).
+
+t1 :- test(0).
+t2 :- test(1).
+t3 :- test(2).
+t4 :- peterson(Model), compare('Peterson', Model).
+t5 :- ring(4, Model), compare('Ring 4', Model).
+t6 :- ring(8, Model), compare('Ring 8', Model).
+
+tall :- t1, t2, t3, t4, t5, t6.
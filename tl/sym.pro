@@ -0,0 +1,501 @@
+% Copyright 2000-2012 by M. Ben-Ari. GNU GPL. See prolog.pdf.
+
+%  Symbolic model checking of CTL and LTL with BDDs
+
+:- module(sym,
+     [build_model/1,
+      build_model/2,
+      relation_size/2,
+      reachable/1,
+      reachable_count/1,
+      ctl_states/2,
+      check_ctl/1,
+      check_ltl/1]).
+
+:- use_module('../prop/bdd').
+
+%  A model is a term model(Vars, Defines, Init, Transitions):
+%    Vars        - list of the names of the Boolean state variables,
+%    Defines     - list of Name = Fml: Name is an abbreviation,
+%    Init        - formula for the initial states,
+%    Transitions - list of t(Name, Guard, Assignments): if the
+%                  formula Guard is true, the transition can assign
+%                  to each Var in the list of Var = Fml the value of
+%                  Fml in the current state; the other variables
+%                  do not change.
+%  Formulas are in internal format with the constants true and false.
+%  The transitions are interleaved: one transition is taken
+%    in each step. A state in which no transition is enabled
+%    (a deadlock) stays in the same state, so every path is infinite.
+%
+%  A set of states is a BDD. State variable K is the BDD variable
+%    2K+1 in the current state and 2K+2 in the next state, so the
+%    two copies are adjacent in the order. The transition relation
+%    is a BDD over both copies.
+%  Since the model owns the numbering of the BDD variables,
+%    build_model clears the BDD package (clear_bdd): all the BDDs
+%    built before it are no longer valid and the variable order
+%    is reset.
+%
+%  The transition relation is the disjunction of the transitions,
+%    and each transition is the conjunction of its guard and
+%    the relations of the next variables. It is kept as a list of
+%    disjuncts, each a list of partitions whose conjunction is
+%    the disjunct. A partition is a pair B-Support, where Support
+%    is the set of variables of the BDD B.
+%    In a monolithic relation there is a single partition;
+%    in a partitioned relation, the guard and each variable of
+%    each transition is a partition, so no BDD of the whole
+%    relation is built (see rel_product).
+%
+%  state_var(Name, K)  - Name is state variable K.
+%  define(Name, Fml)   - Name is an abbreviation of Fml.
+%  model_bdd(init, B) - B is the BDD of the init states.
+%  model_trans(Parts)  - Parts are the partitions of a disjunct
+%    of the transition relation.
+%  model_vars(Kind, Vs) - Vs are the BDD variables of the current
+%    (current) or next (next) state.
+%  tab_var(Fml, K)     - during check_ltl, the tableau variable K
+%    is the elementary formula Fml.
+
+:- dynamic state_var/2, define/2, model_bdd/2, model_trans/1,
+   model_vars/2, tab_var/2.
+
+%  build_model(Model)          - compute the BDDs of Model.
+%  build_model(Model, Options) - Options is a list of:
+%    relation(monolithic)  - one BDD of the transition relation
+%                            (the default),
+%    relation(partitioned) - the partitions of the transitions.
+%  The BDD package is cleared first, so BDDs built before the call
+%    must not be used after it, and the order set by set_var_order
+%    or reorder is lost.
+
+build_model(Model) :-
+  build_model(Model, []).
+
+build_model(model(Vars, Defines, Init, Transitions), Options) :-
+  relation_option(Options, Relation),
+  clear_bdd,
+  retractall(state_var(_,_)),
+  retractall(define(_,_)),
+  retractall(model_bdd(_,_)),
+  retractall(model_trans(_)),
+  retractall(model_vars(_,_)),
+  length(Vars, Count),
+  Last is Count - 1,
+  numlist(0, Last, Ks),
+  maplist(assert_state_var, Vars, Ks),
+  forall(member(Name = Fml, Defines), assert(define(Name, Fml))),
+  maplist(current_var, Ks, Current),
+  maplist(next_var, Ks, Next),
+  state_fml(Init, InitB),
+  maplist(transition(Vars), Transitions, Ts),
+  findall(G, member([G | _], Ts), Guards),
+  foldl(or_bdd, Guards, 0, Enabled),
+  neg(Enabled, Deadlock),
+  maplist(assignment([]), Vars, Frame),
+  relation(Relation, [[Deadlock | Frame] | Ts], Disjuncts),
+  forall(member(Parts, Disjuncts), assert(model_trans(Parts))),
+  assert(model_vars(current, Current)),
+  assert(model_vars(next, Next)),
+  assert(model_bdd(init, InitB)).
+
+relation_option(Options, Relation) :-
+  member(relation(Relation), Options), !.
+relation_option(_, monolithic).
+
+%  relation(Relation, Ts, Disjuncts) - Disjuncts is the relation
+%    for the list Ts of the conjuncts of each transition.
+
+relation(monolithic, Ts, [[T-Support]]) :-
+  maplist(conjunction, Ts, Cs),
+  foldl(or_bdd, Cs, 0, T),
+  support(T, Support).
+relation(partitioned, Ts, Disjuncts) :-
+  maplist(maplist(partition), Ts, Disjuncts).
+
+conjunction([B | Bs], T) :-
+  foldl(and_bdd, Bs, B, T).
+
+partition(B, B-Support) :-
+  support(B, Support).
+
+%  relation_size(Size, Largest) - Size is the number of nodes of
+%    the partitions of the transition relation, counting shared
+%    nodes once, and Largest is the size of the largest partition.
+
+relation_size(Size, Largest) :-
+  findall(B, (model_trans(Parts), member(B-_, Parts)), Bs),
+  bdd_size(Bs, Size),
+  maplist(bdd_size, Bs, Sizes),
+  max_list(Sizes, Largest).
+
+assert_state_var(Name, K) :-
+  assert(state_var(Name, K)).
+
+current_var(K, N) :- N is 2*K + 1.
+next_var(K, N)    :- N is 2*K + 2.
+
+or_bdd(B1, B2, B)  :- apply(B1, or,  B2, B).
+and_bdd(B1, B2, B) :- apply(B1, and, B2, B).
+
+%  transition(Vars, t(Name, Guard, Assignments), [G | As]) -
+%    the conjuncts of the transition: the BDD G of Guard and for
+%    each variable V, V' eqv Fml if it is assigned Fml,
+%    otherwise V' eqv V.
+
+transition(Vars, t(_, Guard, Assignments), [G | As]) :-
+  state_fml(Guard, G),
+  maplist(assignment(Assignments), Vars, As).
+
+assignment(Assignments, V, A) :-
+  ( member(V = Fml, Assignments) -> true ; Fml = V ),
+  state_fml(Fml, B),
+  state_var(V, K),
+  next_var(K, N),
+  literal(pos, N, Next),
+  apply(Next, eqv, B, A).
+
+%  state_fml(Fml, B) - B is the set of states that satisfy the
+%    Boolean formula Fml in the current variables.
+
+state_fml(true,  1) :- !.
+state_fml(false, 0) :- !.
+state_fml(neg A, B) :- !,
+  state_fml(A, B1),
+  neg(B1, B).
+state_fml(Fml, B) :-
+  binary_fml(Fml, Opr, A1, A2), !,
+  state_fml(A1, B1),
+  state_fml(A2, B2),
+  apply(B1, Opr, B2, B).
+state_fml(A, B) :-
+  atom_states(A, B).
+
+binary_fml(Fml, Opr, A1, A2) :-
+  Fml =.. [Opr, A1, A2],
+  member(Opr, [or, and, xor, eqv, imp, nor, nand]).
+
+%  atom_states(A, B) - A is an abbreviation or a state variable.
+
+atom_states(A, B) :-
+  define(A, Fml), !,
+  state_fml(Fml, B).
+atom_states(A, B) :-
+  state_var(A, K),
+  current_var(K, N),
+  literal(pos, N, B).
+
+%  shift(B, Delta, B1) - B1 is B with each variable N replaced by
+%    N+Delta: 1 from the current to the next variables and -1
+%    back. The order is not changed, so each node is made
+%    directly from the unique table.
+
+shift(B, Delta, B1) :-
+  empty_assoc(Empty),
+  shift(B, Delta, B1, Empty, _).
+
+shift(B, _, B, Memo, Memo) :-
+  leaf(B, _), !.
+shift(B, _, B1, Memo, Memo) :-
+  get_assoc(B, Memo, B1), !.
+shift(B, Delta, B1, Memo0, Memo) :-
+  node(B, N, False, True),
+  shift(False, Delta, False1, Memo0, Memo1),
+  shift(True,  Delta, True1,  Memo1, Memo2),
+  N1 is N + Delta,
+  make_bdd(N1, False1, True1, B1),
+  put_assoc(B, Memo2, B1, Memo).
+
+%  A relation rel(Ts, Vs) is a list Ts of the disjuncts of a
+%    transition relation T and the list of its next variables Vs.
+%  pre(Rel, S, B)   - B is the set of states with a successor in S:
+%    exists next (T and S').
+%  image(S, B)      - B is the set of successors of the states S:
+%    (exists current (T and S)) with the next variables renamed.
+
+pre(rel(Ts, Vs), S, B) :-
+  shift(S, 1, S1),
+  rel_product(Ts, S1, Vs, B).
+
+image(S, B) :-
+  model_rel(rel(Ts, _)),
+  model_vars(current, Vs),
+  rel_product(Ts, S, Vs, B1),
+  shift(B1, -1, B).
+
+model_rel(rel(Ts, Vs)) :-
+  findall(Parts, model_trans(Parts), Ts),
+  model_vars(next, Vs).
+
+%  rel_product(Ts, S, Vs, B) - B is exists Vs (T and S), where Ts
+%    are the disjuncts of T. Existential quantification distributes
+%    over disjunction, so each disjunct is computed separately.
+%    The partitions of a disjunct are conjoined one at a time by
+%    and_exists, quantifying each variable as soon as it does not
+%    appear in the remaining partitions (early quantification).
+%
+%  schedule(Parts, Vs, Early, Steps) - Early are the variables of Vs
+%    that appear in no partition, so they are quantified from S
+%    before the first step. Steps is a list of B-Q, one for each
+%    partition B, where Q are the variables of Vs whose last
+%    appearance is in B. The partitions are scanned from the last,
+%    accumulating the variables in Later.
+
+rel_product(Ts, S, Vs, B) :-
+  sort(Vs, Vs1),
+  foldl(disjunct_product(S, Vs1), Ts, 0, B).
+
+disjunct_product(S, Vs, Parts, B0, B) :-
+  schedule(Parts, Vs, Early, Steps),
+  exists(S, Early, S1),
+  foldl(product_step, Steps, S1, B1),
+  or_bdd(B0, B1, B).
+
+product_step(P-Q, B0, B) :-
+  and_exists(B0, P, Q, B).
+
+schedule(Parts, Vs, Early, Steps) :-
+  reverse(Parts, Reversed),
+  foldl(schedule_part(Vs), Reversed, []-[], Later-Steps),
+  ord_subtract(Vs, Later, Early).
+
+schedule_part(Vs, B-Support, Later0-Steps, Later-[B-Q | Steps]) :-
+  ord_intersection(Vs, Support, Used),
+  ord_subtract(Used, Later0, Q),
+  ord_union(Later0, Support, Later).
+
+%  reachable(R)       - R is the set of states reachable from init:
+%    the least fixpoint of R = init or image(R).
+%  reachable_count(N) - N is the number of reachable states.
+
+reachable(R) :-
+  model_bdd(init, Init),
+  reach(Init, Init, R).
+
+%  reach(R0, Frontier, R) - only the image of the states that were
+%    added in the last step is computed.
+
+reach(R, 0, R) :- !.
+reach(R0, Frontier, R) :-
+  image(Frontier, Image),
+  neg(R0, NotR0),
+  apply(Image, and, NotR0, New),
+  apply(R0, or, New, R1),
+  reach(R1, New, R).
+
+reachable_count(N) :-
+  reachable(R),
+  model_vars(current, Vs),
+  sat_count(R, Vs, N).
+
+
+%  ctl_states(Fml, B) - B is the set of states that satisfy the
+%    CTL formula Fml. The temporal operators are ex, ax, ef, af,
+%    eg, ag (one argument) and eu, au (two arguments).
+%    ax, ef, af, ag and au are reduced to ex, eu and eg:
+%      EX f      = pre(f)
+%      EG f      = greatest fixpoint of Z = f and EX Z
+%      E[f U g]  = least fixpoint of Z = g or (f and EX Z)
+%  check_ctl(Fml) - Fml is true in all initial states.
+
+check_ctl(Fml) :-
+  ctl_states(Fml, B),
+  model_bdd(init, Init),
+  neg(B, NotB),
+  apply(Init, and, NotB, 0).
+
+ctl_states(true,  1) :- !.
+ctl_states(false, 0) :- !.
+ctl_states(neg A, B) :- !,
+  ctl_states(A, B1),
+  neg(B1, B).
+ctl_states(Fml, B) :-
+  binary_fml(Fml, Opr, A1, A2), !,
+  ctl_states(A1, B1),
+  ctl_states(A2, B2),
+  apply(B1, Opr, B2, B).
+ctl_states(ex(A), B) :- !,
+  ctl_states(A, S),
+  model_rel(Rel),
+  pre(Rel, S, B).
+ctl_states(eg(A), B) :- !,
+  ctl_states(A, S),
+  model_rel(Rel),
+  eg_fix(Rel, S, S, B).
+ctl_states(eu(A1, A2), B) :- !,
+  ctl_states(A1, S1),
+  ctl_states(A2, S2),
+  model_rel(Rel),
+  eu_fix(Rel, S1, S2, S2, B).
+ctl_states(ax(A), B) :- !,
+  ctl_states(neg ex(neg A), B).
+ctl_states(ef(A), B) :- !,
+  ctl_states(eu(true, A), B).
+ctl_states(af(A), B) :- !,
+  ctl_states(neg eg(neg A), B).
+ctl_states(ag(A), B) :- !,
+  ctl_states(neg ef(neg A), B).
+ctl_states(au(A1, A2), B) :- !,
+  ctl_states(neg eu(neg A2, neg A1 and neg A2) and neg eg(neg A2), B).
+ctl_states(A, B) :-
+  atom_states(A, B).
+
+%  eg_fix(Rel, S, Z0, Z)     - iterate Z = S and EX Z from Z0.
+%  eu_fix(Rel, S1, S2, Z0, Z) - iterate Z = S2 or (S1 and EX Z).
+%    Since BDDs are canonical, the fixpoint is reached when
+%    the iteration returns the same integer.
+
+eg_fix(Rel, S, Z0, Z) :-
+  pre(Rel, Z0, P),
+  apply(S, and, P, Z1),
+  ( Z1 == Z0 -> Z = Z0 ; eg_fix(Rel, S, Z1, Z) ).
+
+eu_fix(Rel, S1, S2, Z0, Z) :-
+  pre(Rel, Z0, P),
+  apply(S1, and, P, Q),
+  apply(S2, or, Q, Z1),
+  ( Z1 == Z0 -> Z = Z0 ; eu_fix(Rel, S1, S2, Z1, Z) ).
+
+
+%  check_ltl(Fml) - the LTL formula Fml with the operators always,
+%    eventually and next is true on all paths from initial states.
+%    The tableau method (Clarke, Grumberg and Hamaguchi, 1994):
+%    - Normalize neg Fml so that always A is neg eventually neg A.
+%    - Each elementary formula next A and next eventually A is
+%        a tableau variable (after the state variables).
+%    - sat(A) is the set of tableau states where A is true:
+%        sat(next A)       = the variable of next A,
+%        sat(eventually A) = sat(A) or sat(next eventually A).
+%    - The tableau relation requires that next A is true in
+%        a state iff A is true in the next state. The product
+%        relation adds it as a partition to each disjunct of
+%        the model relation.
+%    - A path of the product of the model and the tableau is fair
+%        if for each eventually A, infinitely often
+%        neg eventually A or A, so that A is not postponed forever.
+%    Fml is true iff no initial state satisfies sat(neg Fml)
+%      and has a fair path.
+
+check_ltl(Fml) :-
+  ltl_normal(neg Fml, NotFml),
+  retractall(tab_var(_,_)),
+  findall(E, elementary(NotFml, E), Es0),
+  sort(Es0, Es),
+  aggregate_all(count, state_var(_,_), First),
+  foldl(assert_tab_var, Es, First, _),
+  ltl_states(NotFml, Sat),
+  foldl(tableau_trans, Es, 1, TabTrans),
+  findall(F, fairness(NotFml, F), Fairness0),
+  sort(Fairness0, Fairness),
+  partition(TabTrans, TabPart),
+  model_rel(rel(Ts, Next)),
+  maplist(add_partition(TabPart), Ts, Product),
+  findall(N, (tab_var(_, K), next_var(K, N)), TabNext),
+  append(Next, TabNext, Vs),
+  fair_eg(rel(Product, Vs), Fairness, Fair),
+  model_bdd(init, Init),
+  apply(Init, and, Sat, InitSat),
+  apply(InitSat, and, Fair, 0).
+
+add_partition(Part, Parts, Parts1) :-
+  append(Parts, [Part], Parts1).
+
+assert_tab_var(E, K, K1) :-
+  assert(tab_var(E, K)),
+  K1 is K + 1.
+
+%  ltl_normal(Fml, Fml1) - replace always A by neg eventually neg A.
+
+ltl_normal(always A, neg eventually neg A1) :- !,
+  ltl_normal(A, A1).
+ltl_normal(eventually A, eventually A1) :- !,
+  ltl_normal(A, A1).
+ltl_normal(next A, next A1) :- !,
+  ltl_normal(A, A1).
+ltl_normal(neg A, neg A1) :- !,
+  ltl_normal(A, A1).
+ltl_normal(Fml, Fml1) :-
+  binary_fml(Fml, Opr, A1, A2), !,
+  ltl_normal(A1, B1),
+  ltl_normal(A2, B2),
+  Fml1 =.. [Opr, B1, B2].
+ltl_normal(A, A).
+
+%  subformula(Fml, Sub) - Sub is a subformula of Fml.
+%  elementary(Fml, E)   - E is an elementary formula of Fml.
+%  fairness(Fml, F)     - F is a fairness constraint for Fml.
+
+subformula(Fml, Fml).
+subformula(neg A, Sub) :-
+  subformula(A, Sub).
+subformula(next A, Sub) :-
+  subformula(A, Sub).
+subformula(eventually A, Sub) :-
+  subformula(A, Sub).
+subformula(Fml, Sub) :-
+  binary_fml(Fml, _, A1, A2),
+  ( subformula(A1, Sub) ; subformula(A2, Sub) ).
+
+elementary(Fml, next A) :-
+  subformula(Fml, next A).
+elementary(Fml, next eventually A) :-
+  subformula(Fml, eventually A).
+
+fairness(Fml, F) :-
+  subformula(Fml, eventually A),
+  ltl_states(neg eventually A or A, F).
+
+%  ltl_states(Fml, B) - B is sat(Fml) over the state and tableau
+%    variables.
+
+ltl_states(true,  1) :- !.
+ltl_states(false, 0) :- !.
+ltl_states(neg A, B) :- !,
+  ltl_states(A, B1),
+  neg(B1, B).
+ltl_states(next A, B) :- !,
+  tab_var(next A, K),
+  current_var(K, N),
+  literal(pos, N, B).
+ltl_states(eventually A, B) :- !,
+  ltl_states(A, B1),
+  ltl_states(next eventually A, B2),
+  apply(B1, or, B2, B).
+ltl_states(Fml, B) :-
+  binary_fml(Fml, Opr, A1, A2), !,
+  ltl_states(A1, B1),
+  ltl_states(A2, B2),
+  apply(B1, Opr, B2, B).
+ltl_states(A, B) :-
+  atom_states(A, B).
+
+%  tableau_trans(E, T0, T) - conjoin to T0 the tableau relation for
+%    the elementary formula E = next A: E eqv sat(A)'.
+
+tableau_trans(next A, T0, T) :-
+  ltl_states(next A, E),
+  ltl_states(A, S),
+  shift(S, 1, S1),
+  apply(E, eqv, S1, ET),
+  apply(T0, and, ET, T).
+
+%  fair_eg(Rel, Fairness, Z) - Z is the set of states that have a
+%    path on which each constraint in Fairness is true infinitely
+%    often (Emerson and Lei, 1986): the greatest fixpoint of
+%    Z = Z and (for each F) EX E[true U (Z and F)].
+
+fair_eg(Rel, [], Z) :- !,
+  eg_fix(Rel, 1, 1, Z).
+fair_eg(Rel, Fairness, Z) :-
+  fair_fix(Rel, Fairness, 1, Z).
+
+fair_fix(Rel, Fairness, Z0, Z) :-
+  foldl(fair_step(Rel, Z0), Fairness, Z0, Z1),
+  ( Z1 == Z0 -> Z = Z0 ; fair_fix(Rel, Fairness, Z1, Z) ).
+
+fair_step(Rel, Z0, F, Z1, Z) :-
+  apply(Z0, and, F, ZF),
+  eu_fix(Rel, 1, ZF, ZF, EU),
+  pre(Rel, EU, P),
+  apply(Z1, and, P, Z).